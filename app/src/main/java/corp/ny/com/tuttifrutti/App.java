@@ -23,7 +23,7 @@ public class App extends Application {
             public void build(SQLiteDatabase db) {
                 try {
 
-                    db.execSQL(new User().genTable());
+                    new User().getSchema().create(db);
                 } catch (TableException e) {
                     e.printStackTrace();
                 }
@@ -4,6 +4,11 @@ import android.app.Activity;
 import android.os.Bundle;
 import android.view.View;
 
+import java.util.ArrayList;
+
+import corp.ny.com.rufus.database.AsyncModel;
+import corp.ny.com.rufus.database.BatchInsert;
+
 public class HomeActivityActivity extends Activity implements View.OnClickListener {
 
 
@@ -19,30 +24,73 @@ public class HomeActivityActivity extends Activity implements View.OnClickListen
     public void onClick(View view) {
         switch (view.getId()) {
             case R.id.btn_launch:
-                User.getInstance().save();
-                System.out.println(new User().find(1).toJson());
-                for (int i = 0; i < 10; i++) {
-                    Message.getInstance(i).save();
-                    Message message = new Message()
-                            .where("receiverId", User.getInstance().getId())
-                            .where("id", i)
-                            .first();
-                    if (message != null)
-                        System.out.println(message.toJson());
-                }
-
-                Message message = new Message()
-                        .where("receiverId", User.getInstance().getId())
-                        .where("id", 5)
-                        .first();
-                if (message != null) {
-                    System.out.printf("Before  ==> %s", message.toJson());
-                    message.setOpen(true);
-                    message = message.save();
-                    System.out.printf("After  ==> %s", message.toJson());
-                }
+                User.getInstance().async().save(new AsyncModel.Callback<User>() {
+                    @Override
+                    public void onSuccess(User user) {
+                        if (user != null)
+                            System.out.println(user.toJson());
+                        saveMessages();
+                    }
 
+                    @Override
+                    public void onError(Throwable error) {
+                        error.printStackTrace();
+                    }
+                });
                 break;
         }
     }
+
+    private void saveMessages() {
+        ArrayList<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(Message.getInstance(i));
+        }
+        new Message().async().insert(messages, new AsyncModel.Callback<BatchInsert.Report>() {
+            @Override
+            public void onSuccess(BatchInsert.Report report) {
+                System.out.println(report);
+                openMessage(5);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                error.printStackTrace();
+            }
+        });
+    }
+
+    private void openMessage(int id) {
+        new Message()
+                .with("sender")
+                .where("receiverId", User.getInstance().getId())
+                .where("id", id)
+                .async()
+                .get(new AsyncModel.Callback<ArrayList<Message>>() {
+                    @Override
+                    public void onSuccess(ArrayList<Message> result) {
+                        if (result.isEmpty()) return;
+                        Message message = result.get(0);
+                        System.out.printf("Before  ==> %s", message.toJson());
+                        message.setOpen(true);
+                        message.async().save(new AsyncModel.Callback<Message>() {
+                            @Override
+                            public void onSuccess(Message message) {
+                                if (message != null)
+                                    System.out.printf("After  ==> %s", message.toJson());
+                            }
+
+                            @Override
+                            public void onError(Throwable error) {
+                                error.printStackTrace();
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        error.printStackTrace();
+                    }
+                });
+    }
 }
@@ -5,7 +5,9 @@ import android.support.annotation.NonNull;
 import corp.ny.com.rufus.database.Constraint;
 import corp.ny.com.rufus.database.Model;
 import corp.ny.com.rufus.database.Schema;
+import corp.ny.com.rufus.database.annotation.BelongsTo;
 import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.Index;
 import corp.ny.com.rufus.database.annotation.Table;
 
 
@@ -16,16 +18,19 @@ import corp.ny.com.rufus.database.annotation.Table;
 public class Message extends Model<Message> {
     @Column(primary = true, increment = true)
     private int id;
-    @Column
+    @Column(searchable = true)
     private String message;
     @Column
     private boolean isOpen;
     @Column
+    @Index
     @corp.ny.com.rufus.database.annotation.Constraint(references = "id", onTable = "User")
     private int receiverId;
     @Column(defaultInt = 10)
     @corp.ny.com.rufus.database.annotation.Constraint(references = "id", onTable = "User")
     private int senderId;
+    @BelongsTo(foreignKey = "senderId")
+    private transient User sender;
 
     public static Message getInstance(int id) {
         Message message = new Message();
@@ -69,6 +74,10 @@ public class Message extends Model<Message> {
         this.senderId = senderId;
     }
 
+    public User getSender() {
+        return sender;
+    }
+
     public boolean isOpen() {
         return isOpen;
     }
@@ -1,7 +1,10 @@
 package corp.ny.com.tuttifrutti;
 
+import java.util.ArrayList;
+
 import corp.ny.com.rufus.database.Model;
 import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.HasMany;
 import corp.ny.com.rufus.database.annotation.Table;
 
 /**
@@ -23,6 +26,8 @@ public class User extends Model<User> {
     private String profilePicture;
     @Column(nullable = true)
     private String phone;
+    @HasMany(foreignKey = "receiverId")
+    private transient ArrayList<Message> received;
 
     public static User getInstance() {
         User user = new User();
@@ -36,6 +41,10 @@ public class User extends Model<User> {
         return user;
     }
 
+    public ArrayList<Message> getReceived() {
+        return received;
+    }
+
     public String getName() {
         return name;
     }
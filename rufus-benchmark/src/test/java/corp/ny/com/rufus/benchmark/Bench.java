@@ -0,0 +1,149 @@
+package corp.ny.com.rufus.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal harness measuring the average time of an operation the way JMH does in <b>avgt</b> mode
+ * <br>Every iteration runs the operation as many times as it wants and reports how many times it did,
+ * warmup iterations are discarded and the score is the mean time per operation of the measured ones
+ */
+final class Bench {
+    private final int warmups;
+    private final int iterations;
+    private final List<Result> results = new ArrayList<>();
+
+    Bench(int warmups, int iterations) {
+        this.warmups = warmups;
+        this.iterations = iterations;
+    }
+
+    /**
+     * The measured work
+     */
+    abstract static class Operation {
+        /**
+         * @return the number of operations run
+         */
+        abstract int run() throws Exception;
+
+        /**
+         * Undo the changes of an iteration, it is not measured
+         */
+        void after() throws Exception {
+        }
+    }
+
+    /**
+     * @param name the benchmark name
+     * @param rows the number of rows in the table
+     * @param op   the operation
+     * @return the result, also kept for {@link #write(File)}
+     */
+    Result measure(String name, int rows, Operation op) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            op.run();
+            op.after();
+        }
+        double[] samples = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            int count = op.run();
+            samples[i] = (double) (System.nanoTime() - start) / Math.max(1, count);
+            op.after();
+        }
+        Result result = new Result(name, rows, samples);
+        results.add(result);
+        return result;
+    }
+
+    List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Write every result as JSON so runs can be compared by a script
+     *
+     * @param file the output file, its directory is created
+     */
+    void write(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        StringBuilder json = new StringBuilder("{\n  \"mode\": \"avgt\",\n  \"unit\": \"ns/op\",\n");
+        json.append(String.format(Locale.US, "  \"warmups\": %d,\n  \"iterations\": %d,\n  \"results\": [", warmups, iterations));
+        for (int i = 0; i < results.size(); i++) {
+            json.append(i == 0 ? "\n    " : ",\n    ").append(results.get(i).toJson());
+        }
+        json.append("\n  ]\n}\n");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(json.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    static final class Result {
+        final String name;
+        final int rows;
+        final double[] samples;
+
+        Result(String name, int rows, double[] samples) {
+            this.name = name;
+            this.rows = rows;
+            this.samples = samples;
+        }
+
+        double score() {
+            double sum = 0;
+            for (double sample : samples) sum += sample;
+            return sum / samples.length;
+        }
+
+        /**
+         * @return the standard deviation of the iterations
+         */
+        double error() {
+            if (samples.length < 2) return 0;
+            double mean = score();
+            double sum = 0;
+            for (double sample : samples) sum += (sample - mean) * (sample - mean);
+            return Math.sqrt(sum / (samples.length - 1));
+        }
+
+        double min() {
+            double[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            return sorted[0];
+        }
+
+        double max() {
+            double[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length - 1];
+        }
+
+        String toJson() {
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < samples.length; i++) {
+                values.append(i == 0 ? "" : ", ").append(String.format(Locale.US, "%.1f", samples[i]));
+            }
+            return String.format(Locale.US,
+                    "{\"benchmark\": \"%s\", \"rows\": %d, \"score\": %.1f, \"error\": %.1f, \"min\": %.1f, \"max\": %.1f, \"samples\": [%s]}",
+                    name, rows, score(), error(), min(), max(), values);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-20s %9d rows %14.1f ± %.1f ns/op", name, rows, score(), error());
+        }
+    }
+}
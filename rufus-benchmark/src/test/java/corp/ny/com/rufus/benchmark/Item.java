@@ -0,0 +1,81 @@
+package corp.ny.com.rufus.benchmark;
+
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.Index;
+import corp.ny.com.rufus.database.annotation.Table;
+
+/**
+ * Row of the benchmarked table, filled with {@link #generate(int)}
+ */
+@Table
+public class Item extends Model<Item> {
+    static final int CATEGORIES = 100;
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf",
+            "hotel", "india", "juliet", "kilo", "lima", "mike", "november", "oscar", "papa"};
+
+    @Column(primary = true, increment = true)
+    private int id;
+    @Column
+    @Index
+    private int category;
+    @Column
+    private int amount;
+    @Column(searchable = true)
+    private String text;
+    @Column
+    private boolean flag;
+
+    /**
+     * @param seed the row number, the same seed always gives the same values
+     * @return a row that is not saved
+     */
+    public static Item generate(int seed) {
+        Item item = new Item();
+        item.setCategory(seed % CATEGORIES);
+        item.setAmount((seed * 7919) % 10000);
+        item.setText(String.format("%s %s %s", WORDS[seed % WORDS.length], WORDS[(seed / 7) % WORDS.length], seed));
+        item.setFlag(seed % 2 == 0);
+        return item;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getCategory() {
+        return category;
+    }
+
+    public void setCategory(int category) {
+        this.category = category;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public void setAmount(int amount) {
+        this.amount = amount;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public boolean isFlag() {
+        return flag;
+    }
+
+    public void setFlag(boolean flag) {
+        this.flag = flag;
+    }
+}
@@ -0,0 +1,203 @@
+package corp.ny.com.rufus.benchmark;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+import corp.ny.com.rufus.database.Clause;
+import corp.ny.com.rufus.database.FullText;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Hot paths of Rufus measured over tables of every size of <b>benchmark.sizes</b>
+ * <br>The database runs in the JVM on the SQLite of Robolectric, the results are written to <b>benchmark.output</b>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class RufusBenchmark {
+    private static final String TABLE = "Item";
+    private static final String[] QUERIES = {"alpha", "del", "hotel kilo", "papa 12", "nov"};
+
+    private final Random random = new Random(42);
+    private SQLiteDatabase db;
+    private Item template;
+
+    @Before
+    public void setUp() {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig()
+                .databaseName("benchmark.db")
+                .synchronous("NORMAL"));
+        db = RufusApp.getDataBaseInstance();
+        template = new Item();
+    }
+
+    @Test
+    public void hotPaths() throws Exception {
+        Bench bench = new Bench(Integer.getInteger("benchmark.warmups", 2), Integer.getInteger("benchmark.iterations", 5));
+        for (String size : System.getProperty("benchmark.sizes", "1000,10000").split(",")) {
+            int rows = Integer.parseInt(size.trim());
+            fill(rows);
+            run(bench, rows);
+        }
+        bench.write(new File(System.getProperty("benchmark.output", "build/benchmark/results.json")));
+        assertFalse(bench.getResults().isEmpty());
+    }
+
+    private void fill(int rows) throws Exception {
+        for (String statement : FullText.getDropStatements(TABLE)) {
+            db.execSQL(statement);
+        }
+        db.execSQL(String.format("DROP TABLE IF EXISTS %s", TABLE));
+        FullText.forget(TABLE);
+        SchemaMigrator.migrate(db, template.getSchema());
+        ArrayList<Item> chunk = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            chunk.add(Item.generate(i));
+            if (chunk.size() == 10000 || i == rows) {
+                template.insert(chunk);
+                chunk.clear();
+            }
+        }
+    }
+
+    private void run(Bench bench, final int rows) throws Exception {
+        bench.measure("cursorToModel", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                Cursor cursor = db.rawQuery(String.format("SELECT * FROM %s LIMIT 1000", TABLE), null);
+                int count = 0;
+                try {
+                    while (cursor.moveToNext()) {
+                        template.cursorToModel(cursor);
+                        count++;
+                    }
+                } finally {
+                    cursor.close();
+                }
+                return count;
+            }
+        });
+
+        final Item item = Item.generate(1);
+        bench.measure("prepareStatement", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                for (int i = 0; i < 1000; i++) {
+                    item.prepareStatement(new ContentValues());
+                }
+                return 1000;
+            }
+        });
+
+        bench.measure("save", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                for (int i = 0; i < 100; i++) {
+                    Item.generate(rows + i + 1).save();
+                }
+                return 100;
+            }
+
+            @Override
+            void after() {
+                trim(rows);
+            }
+        });
+
+        bench.measure("insert", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                ArrayList<Item> items = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    items.add(Item.generate(rows + i + 1));
+                }
+                template.insert(items);
+                return items.size();
+            }
+
+            @Override
+            void after() {
+                trim(rows);
+            }
+        });
+
+        bench.measure("find", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                for (int i = 0; i < 1000; i++) {
+                    template.find(1 + random.nextInt(rows));
+                }
+                return 1000;
+            }
+        });
+
+        bench.measure("get", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                for (int i = 0; i < 100; i++) {
+                    template.where("category", random.nextInt(Item.CATEGORIES))
+                            .where("amount", Clause.Comparison.gt, 5000)
+                            .limit(100)
+                            .get();
+                }
+                return 100;
+            }
+        });
+
+        bench.measure("paginate", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                for (int i = 0; i < 20; i++) {
+                    //a deep page is reached once by offset, the following ones are seeked
+                    Item pages = new Item();
+                    pages.setLastPage(rows * 9 / 10);
+                    pages.paginate();
+                    pages.paginate();
+                }
+                return 20;
+            }
+        });
+
+        bench.measure("count", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                for (int i = 0; i < 100; i++) {
+                    template.where("category", random.nextInt(Item.CATEGORIES)).count();
+                }
+                return 100;
+            }
+        });
+
+        bench.measure("search", rows, new Bench.Operation() {
+            @Override
+            int run() {
+                for (int i = 0; i < 100; i++) {
+                    template.search(QUERIES[i % QUERIES.length], 20);
+                }
+                return 100;
+            }
+        });
+    }
+
+    /**
+     * Delete the rows added by a measure so every iteration runs on the same table
+     */
+    private void trim(int rows) {
+        db.execSQL(String.format("DELETE FROM %s WHERE id > %s", TABLE, rows));
+    }
+}
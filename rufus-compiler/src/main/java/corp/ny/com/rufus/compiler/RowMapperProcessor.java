@@ -0,0 +1,346 @@
+package corp.ny.com.rufus.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generate a {@code corp.ny.com.rufus.database.RowMapper} for every class annotated with
+ * {@code corp.ny.com.rufus.database.annotation.Table}
+ * <br>The mapper read cursor columns by index and write statement bindings through the model
+ * accessors, a model whose fields cannot be reached keep using reflection at runtime
+ */
+public class RowMapperProcessor extends AbstractProcessor {
+    static final String TABLE = "corp.ny.com.rufus.database.annotation.Table";
+    static final String COLUMN = "corp.ny.com.rufus.database.annotation.Column";
+    static final String SUFFIX = "_RowMapper";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(TABLE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT))
+                    continue;
+                TypeElement type = (TypeElement) element;
+                List<Property> properties = collect(type);
+                if (properties != null)
+                    write(type, properties);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the stored fields of the model or <b>null</b> if one of them can not be reached
+     */
+    private List<Property> collect(TypeElement type) {
+        List<Property> properties = new ArrayList<>();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(type.getEnclosedElements());
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT))
+                continue;
+            Kind kind = Kind.of(field.asType());
+            //same as runtime, unsupported types are not mapped
+            if (kind == null) continue;
+
+            Property property = new Property(field, kind);
+            AnnotationMirror column = findAnnotation(field, COLUMN);
+            if (column != null) {
+                property.isColumn = true;
+                property.isIncrement = Boolean.TRUE.equals(annotationValue(column, "increment"));
+            }
+            if (!modifiers.contains(Modifier.PRIVATE)) {
+                property.getter = "model." + property.name;
+                property.setter = "model." + property.name + " = %s";
+            } else {
+                ExecutableElement getter = findGetter(methods, property);
+                ExecutableElement setter = findSetter(methods, property);
+                if (getter == null || setter == null) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                            String.format("%s.%s has no accessible getter and setter, the model will be mapped by reflection",
+                                    type.getSimpleName(), property.name), field);
+                    return null;
+                }
+                property.getter = "model." + getter.getSimpleName() + "()";
+                property.setter = "model." + setter.getSimpleName() + "(%s)";
+            }
+            properties.add(property);
+        }
+        return properties;
+    }
+
+    private ExecutableElement findGetter(List<ExecutableElement> methods, Property property) {
+        List<String> names = new ArrayList<>();
+        names.add("get" + capitalize(property.name));
+        if (property.kind == Kind.BOOLEAN) {
+            names.add("is" + capitalize(property.name));
+            if (hasBooleanPrefix(property.name))
+                names.add(property.name);
+        }
+        for (ExecutableElement method : methods) {
+            if (!isReachable(method) || !method.getParameters().isEmpty()) continue;
+            if (names.contains(method.getSimpleName().toString())
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), property.type))
+                return method;
+        }
+        return null;
+    }
+
+    private ExecutableElement findSetter(List<ExecutableElement> methods, Property property) {
+        List<String> names = new ArrayList<>();
+        names.add("set" + capitalize(property.name));
+        if (property.kind == Kind.BOOLEAN && hasBooleanPrefix(property.name))
+            names.add("set" + property.name.substring(2));
+        for (ExecutableElement method : methods) {
+            if (!isReachable(method) || method.getParameters().size() != 1) continue;
+            if (names.contains(method.getSimpleName().toString())
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), property.type))
+                return method;
+        }
+        return null;
+    }
+
+    private void write(TypeElement type, List<Property> properties) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String model = type.getQualifiedName().toString();
+
+        List<Property> columns = new ArrayList<>();
+        for (Property property : properties) {
+            if (property.isColumn) columns.add(property);
+        }
+
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by rufus-compiler, do not edit\n");
+        if (!packageName.isEmpty())
+            source.append("package ").append(packageName).append(";\n\n");
+        source.append("import android.content.ContentValues;\n")
+                .append("import android.database.Cursor;\n")
+                .append("import android.database.sqlite.SQLiteStatement;\n\n")
+                .append("import corp.ny.com.rufus.database.RowMapper;\n\n")
+                .append("public final class ").append(simpleName).append(" implements RowMapper<").append(model).append("> {\n")
+                .append("    private static final String[] COLUMNS = {").append(names(properties)).append("};\n")
+                .append("    private static final String[] BIND_COLUMNS = {").append(names(columns)).append("};\n\n");
+
+        source.append("    @Override\n    public String[] getColumns() {\n        return COLUMNS;\n    }\n\n");
+        source.append("    @Override\n    public String[] getBindColumns() {\n        return BIND_COLUMNS;\n    }\n\n");
+
+        source.append("    @Override\n    public void fill(").append(model).append(" model, Cursor cursor, int[] indexes) {\n")
+                .append("        int index;\n");
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            source.append("        index = indexes[").append(i).append("];\n")
+                    .append("        if (index >= 0) ")
+                    .append(String.format(property.setter, property.kind.read)).append(";\n");
+        }
+        source.append("    }\n\n");
+
+        source.append("    @Override\n    public void populate(").append(model).append(" model, ContentValues values) {\n");
+        for (Property property : columns) {
+            String put = String.format("values.put(\"%s\", %s);", property.name, property.kind.box(property.getter));
+            if (property.isIncrement && property.kind.zero != null)
+                source.append("        if (").append(property.getter).append(" != ").append(property.kind.zero).append(") ").append(put).append("\n");
+            else
+                source.append("        ").append(put).append("\n");
+        }
+        source.append("    }\n\n");
+
+        source.append("    @Override\n    public void bind(").append(model).append(" model, SQLiteStatement statement) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            Property property = columns.get(i);
+            int index = i + 1;
+            if (property.kind == Kind.STRING) {
+                source.append("        String value").append(index).append(" = ").append(property.getter).append(";\n")
+                        .append("        if (value").append(index).append(" == null) statement.bindNull(").append(index).append(");\n")
+                        .append("        else statement.bindString(").append(index).append(", value").append(index).append(");\n");
+            } else {
+                String bind = String.format("statement.%s(%s, %s);", property.kind.binder, index, property.kind.bindValue(property.getter));
+                if (property.isIncrement && property.kind.zero != null)
+                    source.append("        if (").append(property.getter).append(" == ").append(property.kind.zero).append(") statement.bindNull(")
+                            .append(index).append(");\n        else ").append(bind).append("\n");
+                else
+                    source.append("        ").append(bind).append("\n");
+            }
+        }
+        source.append("    }\n}\n");
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                    packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + simpleName + ": " + e.getMessage(), type);
+        }
+    }
+
+    private static String names(List<Property> properties) {
+        StringBuilder names = new StringBuilder();
+        for (Property property : properties) {
+            if (names.length() > 0) names.append(", ");
+            names.append('"').append(property.name).append('"');
+        }
+        return names.toString();
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotation.getQualifiedName().contentEquals(name))
+                return mirror;
+        }
+        return null;
+    }
+
+    private Object annotationValue(AnnotationMirror mirror, String name) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name))
+                return entry.getValue().getValue();
+        }
+        return null;
+    }
+
+    private static boolean isReachable(ExecutableElement method) {
+        return !method.getModifiers().contains(Modifier.PRIVATE) && !method.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private static boolean hasBooleanPrefix(String name) {
+        return name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2));
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static class Property {
+        private final String name;
+        private final TypeMirror type;
+        private final Kind kind;
+        private boolean isColumn;
+        private boolean isIncrement;
+        private String getter;
+        private String setter;
+
+        private Property(VariableElement field, Kind kind) {
+            this.name = field.getSimpleName().toString();
+            this.type = field.asType();
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Field types supported by the mapper, they match the runtime reflection path
+     */
+    private enum Kind {
+        STRING("cursor.getString(index)", null, "bindString"),
+        INT("cursor.isNull(index) ? 0 : cursor.getInt(index)", "0", "bindLong"),
+        LONG("cursor.isNull(index) ? 0L : cursor.getLong(index)", "0L", "bindLong"),
+        SHORT("cursor.isNull(index) ? 0 : cursor.getShort(index)", "0", "bindLong"),
+        BYTE("cursor.isNull(index) ? 0 : (byte) cursor.getInt(index)", "0", "bindLong"),
+        BOOLEAN("!cursor.isNull(index) && cursor.getInt(index) == 1", null, "bindLong"),
+        DOUBLE("cursor.isNull(index) ? 0d : cursor.getDouble(index)", "0d", "bindDouble"),
+        FLOAT("cursor.isNull(index) ? 0f : cursor.getFloat(index)", "0f", "bindDouble");
+
+        private final String read;
+        private final String zero;
+        private final String binder;
+
+        Kind(String read, String zero, String binder) {
+            this.read = read;
+            this.zero = zero;
+            this.binder = binder;
+        }
+
+        static Kind of(TypeMirror type) {
+            switch (type.getKind()) {
+                case INT:
+                    return INT;
+                case LONG:
+                    return LONG;
+                case SHORT:
+                    return SHORT;
+                case BYTE:
+                    return BYTE;
+                case BOOLEAN:
+                    return BOOLEAN;
+                case DOUBLE:
+                    return DOUBLE;
+                case FLOAT:
+                    return FLOAT;
+                case DECLARED:
+                    return type.toString().equals("java.lang.String") ? STRING : null;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * ContentValues has no primitive overloads, values are boxed to the matching wrapper
+         */
+        String box(String value) {
+            switch (this) {
+                case INT:
+                    return "Integer.valueOf(" + value + ")";
+                case LONG:
+                    return "Long.valueOf(" + value + ")";
+                case SHORT:
+                    return "Short.valueOf(" + value + ")";
+                case BYTE:
+                    return "Byte.valueOf(" + value + ")";
+                case BOOLEAN:
+                    return "Boolean.valueOf(" + value + ")";
+                case DOUBLE:
+                    return "Double.valueOf(" + value + ")";
+                case FLOAT:
+                    return "Float.valueOf(" + value + ")";
+                default:
+                    return value;
+            }
+        }
+
+        String bindValue(String value) {
+            return this == BOOLEAN ? "(" + value + ") ? 1 : 0" : value;
+        }
+    }
+}
@@ -19,3 +19,9 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
 #-renamesourcefileattribute SourceFile
+
+# Row mappers generated by rufus-compiler are looked up by name
+-keep class * implements corp.ny.com.rufus.database.RowMapper {
+    <init>();
+}
+-keepnames @corp.ny.com.rufus.database.annotation.Table class *
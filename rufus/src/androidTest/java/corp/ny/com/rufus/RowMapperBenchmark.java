@@ -0,0 +1,192 @@
+package corp.ny.com.rufus;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.TableMetadata;
+import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.Table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compare the generated row mapper with the reflection path on a real SQLite database
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowMapperBenchmark {
+    private static final String TAG = "RowMapperBenchmark";
+    private static final int ROWS = 10000;
+    private static final int ROUNDS = 5;
+    private static SQLiteDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = SQLiteDatabase.create(null);
+        db.execSQL(new BenchRow().genTable());
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= ROWS; i++) {
+                db.insert("BenchRow", null, BenchRow.create(i).prepareStatement(new ContentValues()));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        TableMetadata.setMappersEnabled(true);
+        db.close();
+    }
+
+    @Test
+    public void mapperIsGenerated() {
+        assertNotNull(TableMetadata.of(BenchRow.class).getMapper());
+    }
+
+    @Test
+    public void read() {
+        TableMetadata.setMappersEnabled(false);
+        ArrayList<BenchRow> reflected = new BenchRow().findAll();
+        long reflection = measureRead();
+        TableMetadata.setMappersEnabled(true);
+        ArrayList<BenchRow> mapped = new BenchRow().findAll();
+        long mapper = measureRead();
+
+        assertEquals(ROWS, mapped.size());
+        assertEquals(reflected.toString(), mapped.toString());
+        Log.i(TAG, String.format("read %s rows: reflection %s ms, mapper %s ms", ROWS, reflection, mapper));
+    }
+
+    @Test
+    public void write() {
+        ArrayList<BenchRow> rows = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            rows.add(BenchRow.create(i));
+        }
+        TableMetadata.setMappersEnabled(false);
+        long reflection = measureWrite(rows);
+        TableMetadata.setMappersEnabled(true);
+        long mapper = measureWrite(rows);
+
+        Log.i(TAG, String.format("populate %s rows: reflection %s ms, mapper %s ms", ROWS, reflection, mapper));
+    }
+
+    private long measureRead() {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            new BenchRow().findAll();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1000000;
+    }
+
+    private long measureWrite(ArrayList<BenchRow> rows) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (BenchRow row : rows) {
+                row.prepareStatement(new ContentValues());
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1000000;
+    }
+
+    @Table
+    public static class BenchRow extends Model<BenchRow> {
+        @Column(primary = true, increment = true)
+        private int id;
+        @Column
+        private String title;
+        @Column
+        private String body;
+        @Column
+        private long count;
+        @Column
+        private double score;
+        @Column
+        private boolean flag;
+
+        static BenchRow create(int i) {
+            BenchRow row = new BenchRow();
+            row.setTitle("title " + i);
+            row.setBody("body of the row number " + i);
+            row.setCount(i * 31L);
+            row.setScore(i / 3d);
+            row.setFlag(i % 2 == 0);
+            return row;
+        }
+
+        @Override
+        protected SQLiteDatabase getDb() {
+            return db;
+        }
+
+        @Override
+        public String getTableName() {
+            return "BenchRow";
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public void setBody(String body) {
+            this.body = body;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+
+        public boolean isFlag() {
+            return flag;
+        }
+
+        public void setFlag(boolean flag) {
+            this.flag = flag;
+        }
+    }
+}
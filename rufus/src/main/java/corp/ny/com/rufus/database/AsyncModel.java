@@ -0,0 +1,150 @@
+package corp.ny.com.rufus.database;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import corp.ny.com.rufus.system.RufusExecutors;
+
+/**
+ * Run model operations off the calling thread
+ * <br>Writes are queued on the writer of the model {@link Database}, reads on {@link RufusExecutors#reader()}.
+ * Callbacks are delivered on the main thread, the returned {@link Future} can be used instead from a worker
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * user.async().save(new AsyncModel.Callback&lt;User&gt;() {
+ *     public void onSuccess(User user) { ... }
+ *     public void onError(Throwable error) { ... }
+ * });
+ * </pre></blockquote>
+ *
+ * @param <T> the model type
+ */
+public class AsyncModel<T> {
+    private final Model<T> model;
+
+    AsyncModel(Model<T> model) {
+        this.model = model;
+    }
+
+    public Future<T> save(Callback<T> callback) {
+        return submit(model.getDatabase().writer(), new Callable<T>() {
+            @Override
+            public T call() {
+                return model.save();
+            }
+        }, callback);
+    }
+
+    public Future<T> update(Callback<T> callback) {
+        return submit(model.getDatabase().writer(), new Callable<T>() {
+            @Override
+            public T call() {
+                return model.update();
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> delete(Callback<Boolean> callback) {
+        return submit(model.getDatabase().writer(), new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return model.delete();
+            }
+        }, callback);
+    }
+
+    public Future<BatchInsert.Report> insert(final ArrayList<T> models, Callback<BatchInsert.Report> callback) {
+        return submit(model.getDatabase().writer(), new Callable<BatchInsert.Report>() {
+            @Override
+            public BatchInsert.Report call() {
+                return model.insert(models);
+            }
+        }, callback);
+    }
+
+    public Future<T> find(final String id, Callback<T> callback) {
+        return submit(RufusExecutors.reader(), new Callable<T>() {
+            @Override
+            public T call() {
+                return model.find(id);
+            }
+        }, callback);
+    }
+
+    public Future<T> find(int id, Callback<T> callback) {
+        return find(String.valueOf(id), callback);
+    }
+
+    public Future<T> find(long id, Callback<T> callback) {
+        return find(String.valueOf(id), callback);
+    }
+
+    /**
+     * Run the pending where chain, it is taken from the model when this method is called
+     */
+    public Future<ArrayList<T>> get(Callback<ArrayList<T>> callback) {
+        final Model<T> query = model.detach();
+        return submit(RufusExecutors.reader(), new Callable<ArrayList<T>>() {
+            @Override
+            public ArrayList<T> call() {
+                return query.get();
+            }
+        }, callback);
+    }
+
+    /**
+     * Read the next page, the pages of a model must be requested one after the other
+     */
+    public Future<ArrayList<T>> paginate(Callback<ArrayList<T>> callback) {
+        return submit(RufusExecutors.reader(), new Callable<ArrayList<T>>() {
+            @Override
+            public ArrayList<T> call() {
+                synchronized (model) {
+                    return model.paginate();
+                }
+            }
+        }, callback);
+    }
+
+    private static <R> Future<R> submit(ExecutorService executor, final Callable<R> task, final Callback<R> callback) {
+        return executor.submit(new Callable<R>() {
+            @Override
+            public R call() throws Exception {
+                try {
+                    final R result = task.call();
+                    if (callback != null)
+                        RufusExecutors.postToMain(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.onSuccess(result);
+                            }
+                        });
+                    return result;
+                } catch (final Exception e) {
+                    if (callback != null)
+                        RufusExecutors.postToMain(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.onError(e);
+                            }
+                        });
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Receive the result of an asynchronous operation on the main thread
+     *
+     * @param <R> the result type
+     */
+    public interface Callback<R> {
+        void onSuccess(R result);
+
+        void onError(Throwable error);
+    }
+}
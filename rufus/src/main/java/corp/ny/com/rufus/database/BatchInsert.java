@@ -0,0 +1,370 @@
+package corp.ny.com.rufus.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bulk write engine, one INSERT statement is compiled per call and every model is bound to it
+ * <br>Rows are committed by chunks, a failing chunk is rolled back and the exception is rethrown,
+ * the chunks already committed stay in the table unless the call is nested in an outer transaction.
+ * <br>With {@link #upsert(String)} an existing row is updated in place, SQLite 3.24 and later do it in
+ * the INSERT itself with <b>ON CONFLICT DO UPDATE</b>, older versions run an UPDATE first and only
+ * INSERT when no row was touched. Unlike <b>INSERT OR REPLACE</b> the row is never deleted so
+ * delete triggers and cascades do not fire
+ *
+ * @param <T> the model type
+ */
+public class BatchInsert<T> {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final String[] CONFLICT_VALUES = new String[]{"", " OR ROLLBACK", " OR ABORT", " OR FAIL", " OR IGNORE", " OR REPLACE"};
+
+    private final SQLiteDatabase db;
+    private final String table;
+    private final TableMetadata metadata;
+    private int conflict = SQLiteDatabase.CONFLICT_NONE;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private String key;
+    private static final Map<String, Boolean> nativeUpsert = new ConcurrentHashMap<>();
+
+    private BatchInsert(SQLiteDatabase db, String table, Class<?> type) {
+        this.db = db;
+        this.table = table;
+        this.metadata = TableMetadata.of(type);
+    }
+
+    /**
+     * @param db    the database to write into
+     * @param table the table name
+     * @param type  the model class
+     * @return a new batch
+     */
+    public static <T> BatchInsert<T> into(SQLiteDatabase db, String table, Class<?> type) {
+        return new BatchInsert<>(db, table, type);
+    }
+
+    /**
+     * @param conflict one of the {@code SQLiteDatabase.CONFLICT_*} policies
+     * @return the batch
+     */
+    public BatchInsert<T> conflict(int conflict) {
+        this.conflict = conflict;
+        return this;
+    }
+
+    /**
+     * @param chunkSize number of rows committed per transaction
+     * @return the batch
+     */
+    public BatchInsert<T> chunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+        return this;
+    }
+
+    /**
+     * Update the row holding the same key instead of failing
+     *
+     * @param key the primary key or a unique column
+     * @return the batch
+     */
+    public BatchInsert<T> upsert(String key) {
+        this.key = key;
+        return this;
+    }
+
+    /**
+     * @param db the database
+     * @return true if its SQLite version understand <b>ON CONFLICT DO UPDATE</b>, the answer is remembered per file
+     */
+    public static boolean supportsUpsert(SQLiteDatabase db) {
+        Boolean supported = nativeUpsert.get(db.getPath());
+        if (supported == null) {
+            Cursor cursor = db.rawQuery("SELECT sqlite_version()", null);
+            try {
+                supported = cursor.moveToFirst() && compareVersions(cursor.getString(0), "3.24.0") >= 0;
+            } finally {
+                cursor.close();
+            }
+            nativeUpsert.put(db.getPath(), supported);
+        }
+        return supported;
+    }
+
+    static int compareVersions(String left, String right) {
+        String[] a = left.split("\\.");
+        String[] b = right.split("\\.");
+        for (int i = 0; i < Math.max(a.length, b.length); i++) {
+            int x = i < a.length ? Integer.parseInt(a[i]) : 0;
+            int y = i < b.length ? Integer.parseInt(b[i]) : 0;
+            if (x != y) return x < y ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the INSERT statement shared by every row
+     */
+    public String toSql() {
+        return toSql(key != null && supportsUpsert(db));
+    }
+
+    /**
+     * @param nativeUpsert true to append the ON CONFLICT DO UPDATE clause of {@link #upsert(String)}, it needs
+     *                     SQLite 3.24, see {@link #supportsUpsert(SQLiteDatabase)}
+     * @return the INSERT statement shared by every row
+     */
+    public String toSql(boolean nativeUpsert) {
+        String[] columns = getColumns();
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                names.append(',');
+                values.append(',');
+            }
+            names.append('`').append(columns[i]).append('`');
+            values.append('?');
+        }
+        if (!nativeUpsert)
+            return String.format("INSERT%s INTO %s (%s) VALUES (%s)", CONFLICT_VALUES[conflict], table, names, values);
+        StringBuilder updates = new StringBuilder();
+        for (String column : columns) {
+            if (column.equals(key)) continue;
+            if (updates.length() > 0) updates.append(',');
+            updates.append('`').append(column).append("` = excluded.`").append(column).append('`');
+        }
+        //a key only table has nothing to update, DO NOTHING would report the existing row as not written
+        if (updates.length() == 0)
+            updates.append('`').append(key).append("` = excluded.`").append(key).append('`');
+        return String.format("INSERT INTO %s (%s) VALUES (%s) ON CONFLICT(`%s`) DO UPDATE SET %s", table, names, values,
+                key, updates);
+    }
+
+    /**
+     * Build the UPDATE run before the INSERT when SQLite is too old for ON CONFLICT DO UPDATE
+     * <br>Parameters are numbered like the INSERT ones so a model is bound the same way to both statements
+     *
+     * @return the UPDATE statement or <b>null</b> if the key is not a column of the model
+     */
+    String toUpdateSql() {
+        String[] columns = getColumns();
+        StringBuilder updates = new StringBuilder();
+        int keyIndex = -1;
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(key)) {
+                keyIndex = i + 1;
+                continue;
+            }
+            if (updates.length() > 0) updates.append(',');
+            updates.append('`').append(columns[i]).append("` = ?").append(i + 1);
+        }
+        if (keyIndex < 0) return null;
+        if (updates.length() == 0) updates.append('`').append(key).append("` = ?").append(keyIndex);
+        return String.format("UPDATE %s SET %s WHERE `%s` = ?%s", table, updates, key, keyIndex);
+    }
+
+    /**
+     * Write a single model without opening a transaction
+     *
+     * @param model the model
+     * @return the rowid of the inserted row, an updated row does not give a meaningful value
+     */
+    public long execute(T model) {
+        if (getColumns().length == 0) return -1;
+        Writer writer = new Writer();
+        try {
+            return writer.write(model);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write every model
+     *
+     * @param models the models to insert
+     * @return the timing of each committed chunk
+     */
+    public Report execute(Iterable<? extends T> models) {
+        Report report = new Report();
+        if (getColumns().length == 0) return report;
+
+        Writer writer = new Writer();
+        try {
+            int rows = 0;
+            int inserted = 0;
+            long start = System.nanoTime();
+            db.beginTransaction();
+            try {
+                for (T model : models) {
+                    if (writer.write(model) != -1) inserted++;
+
+                    if (++rows == chunkSize) {
+                        db.setTransactionSuccessful();
+                        db.endTransaction();
+                        report.add(new Batch(rows, inserted, System.nanoTime() - start));
+                        rows = 0;
+                        inserted = 0;
+                        start = System.nanoTime();
+                        db.beginTransaction();
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (rows > 0)
+                report.add(new Batch(rows, inserted, System.nanoTime() - start));
+        } finally {
+            writer.close();
+        }
+        return report;
+    }
+
+    private String[] getColumns() {
+        RowMapper<Object> mapper = metadata.getMapper();
+        if (mapper != null) return mapper.getBindColumns();
+        List<TableMetadata.Attribute> attributes = metadata.getColumns();
+        String[] columns = new String[attributes.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = attributes.get(i).getName();
+        }
+        return columns;
+    }
+
+    /**
+     * The compiled statements of one call
+     */
+    private class Writer {
+        private final RowMapper<Object> mapper = metadata.getMapper();
+        private final List<TableMetadata.Attribute> attributes = metadata.getColumns();
+        private final SQLiteStatement insert;
+        private final SQLiteStatement update;
+
+        Writer() {
+            boolean nativeUpsert = key != null && supportsUpsert(db);
+            String updateSql = key == null || nativeUpsert ? null : toUpdateSql();
+            insert = db.compileStatement(toSql(nativeUpsert));
+            update = updateSql == null ? null : db.compileStatement(updateSql);
+        }
+
+        /**
+         * @return the rowid of the written row or <b>-1</b> if it was ignored
+         */
+        long write(T model) {
+            if (update != null) {
+                bind(model, update);
+                if (update.executeUpdateDelete() > 0) return 0;
+            }
+            bind(model, insert);
+            return insert.executeInsert();
+        }
+
+        private void bind(T model, SQLiteStatement statement) {
+            statement.clearBindings();
+            if (mapper != null) {
+                mapper.bind(model, statement);
+            } else {
+                for (int i = 0; i < attributes.size(); i++) {
+                    attributes.get(i).bind(model, statement, i + 1);
+                }
+            }
+        }
+
+        void close() {
+            insert.close();
+            if (update != null) update.close();
+        }
+    }
+
+    /**
+     * Timing of one committed chunk
+     */
+    public static class Batch {
+        private final int rows;
+        private final int inserted;
+        private final long elapsedNanos;
+
+        Batch(int rows, int inserted, long elapsedNanos) {
+            this.rows = rows;
+            this.inserted = inserted;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return number of models bound in the chunk
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @return number of rows actually written, inserted or upserted, ignored conflicts are not counted
+         */
+        public int getInserted() {
+            return inserted;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s rows in %.2f ms (%.0f rows/s)", rows, elapsedNanos / 1e6, getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Result of a batch insert
+     */
+    public static class Report {
+        private final List<Batch> batches = new ArrayList<>();
+
+        void add(Batch batch) {
+            batches.add(batch);
+        }
+
+        public List<Batch> getBatches() {
+            return Collections.unmodifiableList(batches);
+        }
+
+        public int getRows() {
+            int rows = 0;
+            for (Batch batch : batches) rows += batch.rows;
+            return rows;
+        }
+
+        public int getInserted() {
+            int inserted = 0;
+            for (Batch batch : batches) inserted += batch.inserted;
+            return inserted;
+        }
+
+        public long getElapsedNanos() {
+            long elapsed = 0;
+            for (Batch batch : batches) elapsed += batch.elapsedNanos;
+            return elapsed;
+        }
+
+        public double getRowsPerSecond() {
+            long elapsed = getElapsedNanos();
+            return elapsed == 0 ? 0 : getRows() * 1e9 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s rows in %s batches (%.0f rows/s)", getRows(), batches.size(), getRowsPerSecond());
+        }
+    }
+}
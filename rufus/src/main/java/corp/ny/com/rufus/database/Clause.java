@@ -1,19 +1,39 @@
 package corp.ny.com.rufus.database;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class Clause {
     private String field;
     private String comparator = Comparison.eq.value;
     private String value;
+    private String[] values;
 
     public Clause(String field, String comparator, String value) {
         this.field = field;
         this.comparator = comparator;
         this.value = value;
+        this.values = new String[]{value};
     }
 
     public Clause(String field, String value) {
         this.field = field;
         this.value = value;
+        this.values = new String[]{value};
+    }
+
+    /**
+     * Clause with a variable number of values like <b>IN</b>, <b>NOT IN</b> or <b>BETWEEN</b>
+     *
+     * @param field      the column name
+     * @param comparison the operator
+     * @param values     the operands
+     */
+    public Clause(String field, Comparison comparison, String... values) {
+        this.field = field;
+        this.comparator = comparison.value;
+        this.values = values;
+        this.value = values.length > 0 ? values[0] : null;
     }
 
     public String getField() {
@@ -28,9 +48,53 @@ public class Clause {
         return value;
     }
 
+    public String[] getValues() {
+        return values;
+    }
+
+    /**
+     * Write the clause with <b>?</b> placeholders, the values are appended to the bind arguments
+     *
+     * @param args the bind arguments of the query
+     * @return the sql condition
+     */
+    public String toSql(List<String> args) {
+        String column = quote(field);
+        String operator = comparator.trim().toUpperCase();
+        if (operator.equals(Comparison.in.value) || operator.equals(Comparison.not_in.value)) {
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < values.length; i++) {
+                placeholders.append(i == 0 ? "?" : ",?");
+            }
+            args.addAll(Arrays.asList(values));
+            return String.format("%s %s (%s)", column, operator, placeholders);
+        }
+        if (operator.equals(Comparison.between.value)) {
+            if (values.length != 2)
+                throw new IllegalArgumentException("BETWEEN expect 2 values but got " + values.length);
+            args.add(values[0]);
+            args.add(values[1]);
+            return String.format("%s BETWEEN ? AND ?", column);
+        }
+        //NULL can not be bound to a comparison
+        if (value == null || (operator.startsWith(Comparison.is.value) && value.equalsIgnoreCase("NULL"))) {
+            boolean negate = operator.equals(Comparison.diff.value) || operator.equals(Comparison.is_not.value);
+            return String.format("%s %s", column, negate ? "IS NOT NULL" : "IS NULL");
+        }
+        args.add(value);
+        return String.format("%s %s ?", column, operator);
+    }
+
+    /**
+     * Quote plain column names, expressions are kept as is
+     */
+    static String quote(String field) {
+        return field.matches("\\w+") ? String.format("`%s`", field) : field;
+    }
+
     @Override
     public String toString() {
-        return String.format("%s %s %s",field,comparator,value);
+        return String.format("%s %s %s", field, comparator, values.length == 1 ? value : Arrays.toString(values));
     }
 
     public enum Comparison {
@@ -40,6 +104,7 @@ public class Clause {
         gt(">"),
         gte(">="),
         diff("!="),
+        like("LIKE"),
         in("IN"),
         not_in("NOT IN"),
         between("BETWEEN"),
@@ -109,6 +109,46 @@ public class Column {
         return this;
     }
 
+    /**
+     * @return the column name without quotes
+     */
+    public String getName() {
+        int end = name.indexOf('`', 1);
+        return name.startsWith("`") && end > 0 ? name.substring(1, end) : name.split(" ")[0];
+    }
+
+    /**
+     * @return the declared type with its size, <b>VARCHAR(45)</b>
+     */
+    public String getType() {
+        int start = name.lastIndexOf('`') + 1;
+        String type = (start > 0 ? name.substring(start) : name.substring(name.indexOf(' ') + 1)).trim();
+        return size > 0 ? String.format("%s(%s)", type, size) : type;
+    }
+
+    public boolean isNullable() {
+        return isNullable;
+    }
+
+    /**
+     * @return true if the column is declared <b>NOT NULL</b>
+     */
+    public boolean isNotNull() {
+        return !isNullable && !isPrimary;
+    }
+
+    public boolean isUnique() {
+        return isUnique;
+    }
+
+    public boolean isPrimary() {
+        return isPrimary;
+    }
+
+    public String getDefValue() {
+        return defValue;
+    }
+
     @Override
     public String toString() {
         return String.format(
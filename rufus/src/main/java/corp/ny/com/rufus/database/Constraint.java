@@ -1,5 +1,10 @@
 package corp.ny.com.rufus.database;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * Created by Yann Yvan CEO of N.Y. Corp. on 05/05/18.
  */
@@ -127,6 +132,37 @@ public class Constraint {
                     String.format("ON UPDATE %s", onUpdate.toString()));
     }
 
+    public String getColumn() {
+        return column;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getReferences() {
+        return references;
+    }
+
+    public Action getOnDelete() {
+        return onDelete;
+    }
+
+    public Action getOnUpdate() {
+        return onUpdate;
+    }
+
+    /**
+     * @return the columns of a primary key constraint, empty for a foreign key
+     */
+    public String[] getPrimaryColumns() {
+        if (primaries == null) return new String[0];
+        List<String> names = new ArrayList<>();
+        Matcher matcher = Pattern.compile("`([^`]+)`").matcher(primaries);
+        while (matcher.find()) names.add(matcher.group(1));
+        return names.toArray(new String[names.size()]);
+    }
+
     public enum Action {
         RESTRICT("RESTRICT"),
         CASCADE("CASCADE"),
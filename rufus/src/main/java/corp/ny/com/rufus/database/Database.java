@@ -0,0 +1,273 @@
+package corp.ny.com.rufus.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+import corp.ny.com.rufus.system.RufusExecutors;
+
+/**
+ * A database file with its own connection pool, write-ahead log and writer thread
+ * <br>The default database is the one declared in the manifest, other databases are registered by name so a
+ * write-heavy table does not lock the others out. A model is bound to a database with
+ * {@link corp.ny.com.rufus.database.annotation.Table#database()} or by overriding {@link Model#getDatabase()}
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * Database.register("logs", new DatabaseConfig().databaseName("logs.db").version(1))
+ *         .addOnUpgradeSchema(1, new Message().getSchema());
+ *
+ * &#64;Table(database = "logs")
+ * public class Message extends Model&lt;Message&gt; { ... }
+ * </pre></blockquote>
+ */
+public final class Database {
+    private static final Map<String, Database> registry = new ConcurrentHashMap<>();
+    private static volatile Database defaultDatabase;
+
+    private final String name;
+    private final DatabaseConfig config;
+    private final Migrations migrations;
+    private final boolean isDefault;
+    private final long initTime;
+    private volatile SQLiteDatabase db;
+    private volatile FutureTask<SQLiteDatabase> opening;
+    private volatile long timeToReady = -1;
+    private ExecutorService writer;
+
+    private Database(Context context, String name, DatabaseConfig config, boolean isDefault) {
+        this.name = name;
+        this.config = config;
+        this.isDefault = isDefault;
+        this.initTime = SystemClock.elapsedRealtime();
+        this.migrations = new Migrations(context, config.getDatabaseName(), null, config.getVersion(), config);
+        // the table builder of the application only knows the tables of the default database
+        if (!isDefault) migrations.disableTableBuilder();
+        this.opening = newOpening();
+    }
+
+    /**
+     * Create the default database, called by {@link RufusApp} with the manifest configuration
+     *
+     * @param context the application context
+     * @param config  the configuration
+     * @return the default database, it is not opened yet
+     */
+    public static Database initDefault(Context context, DatabaseConfig config) {
+        defaultDatabase = new Database(context, null, config, true);
+        return defaultDatabase;
+    }
+
+    /**
+     * @return the database declared in the manifest
+     */
+    public static Database getDefault() {
+        Database database = defaultDatabase;
+        if (database == null)
+            throw new IllegalStateException("Rufus is not initialized, call RufusApp.init(context)");
+        return database;
+    }
+
+    /**
+     * Declare a named database, it is opened on its first use
+     *
+     * @param name   the name models refer to
+     * @param config its configuration, without file name the file is <b>name.db</b>
+     * @return the database
+     */
+    public static Database register(String name, DatabaseConfig config) {
+        if (name == null || name.isEmpty())
+            throw new IllegalArgumentException("A database needs a name");
+        if (config.getDatabaseName() == null)
+            config.databaseName(name + ".db");
+        Database database = new Database(RufusApp.getContext(), name, config, false);
+        synchronized (registry) {
+            if (registry.containsKey(name))
+                throw new IllegalStateException(String.format("The database %s is already registered", name));
+            registry.put(name, database);
+        }
+        return database;
+    }
+
+    /**
+     * @param name the name given to {@link #register(String, DatabaseConfig)}, <b>null</b> or empty for the default
+     * @return the database
+     * @throws IllegalArgumentException if no database has this name
+     */
+    public static Database get(String name) {
+        if (name == null || name.isEmpty()) return getDefault();
+        Database database = registry.get(name);
+        if (database == null)
+            throw new IllegalArgumentException(String.format("No database is registered as %s", name));
+        return database;
+    }
+
+    /**
+     * @return every registered database, the default one excluded
+     */
+    public static Collection<Database> getRegistered() {
+        return Collections.unmodifiableCollection(registry.values());
+    }
+
+    /**
+     * @return the name or <b>null</b> for the default database
+     */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDefault() {
+        return isDefault;
+    }
+
+    public DatabaseConfig getConfig() {
+        return config;
+    }
+
+    public Migrations getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * Create or migrate tables of this database when its version reaches <b>version</b>
+     *
+     * @param version the version introducing the schemas
+     * @param schemas the tables
+     * @return the database
+     */
+    public Database addOnUpgradeSchema(int version, Schema... schemas) {
+        migrations.add(new ArrayList<>(Arrays.asList(schemas)), version);
+        return this;
+    }
+
+    /**
+     * @param table a table of this database
+     * @return a key telling the table apart from a table of the same name in another database
+     */
+    public String qualify(String table) {
+        return isDefault ? table : String.format("%s.%s", name, table);
+    }
+
+    /**
+     * The connection is opened once, every thread then share it
+     * <br>The first caller opens and migrates the database, if {@link #warmUp()} is already opening it the caller
+     * waits for the end of the open. With {@link DatabaseConfig#isDeferredInit()} the main thread never opens it,
+     * the open runs on {@link #writer()} while the main thread waits
+     *
+     * @return the database
+     */
+    public SQLiteDatabase getWritableDatabase() {
+        SQLiteDatabase db = this.db;
+        if (db != null) return db;
+        FutureTask<SQLiteDatabase> opening = this.opening;
+        if (config.isDeferredInit() && Looper.myLooper() == Looper.getMainLooper())
+            warmUp();
+        else
+            //does nothing if another thread is already running the open
+            opening.run();
+        try {
+            return opening.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the database was opening", e);
+        } catch (ExecutionException e) {
+            //the next call tries again
+            synchronized (this) {
+                if (this.opening == opening) this.opening = newOpening();
+            }
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Open and migrate the database on its writer thread without waiting
+     *
+     * @return the open in progress
+     */
+    public Future<SQLiteDatabase> warmUp() {
+        FutureTask<SQLiteDatabase> opening = this.opening;
+        if (!opening.isDone())
+            writer().execute(opening);
+        return opening;
+    }
+
+    /**
+     * @return true once the database is opened and migrated
+     */
+    public boolean isReady() {
+        return db != null;
+    }
+
+    /**
+     * @return milliseconds between the initialization and the end of the first open, -1 while it is not ready
+     */
+    public long getTimeToReady() {
+        return timeToReady;
+    }
+
+    /**
+     * @return the single thread executor running the writes of this database, the default database uses
+     * {@link RufusExecutors#writer()}
+     */
+    public ExecutorService writer() {
+        if (isDefault) return RufusExecutors.writer();
+        synchronized (this) {
+            if (writer == null)
+                writer = RufusExecutors.newSingleThreadExecutor(String.format("rufus-writer-%s", name));
+            return writer;
+        }
+    }
+
+    /**
+     * Close the connections and stop the writer thread, pending writes are still executed
+     */
+    public void close() {
+        synchronized (this) {
+            if (writer != null) writer.shutdown();
+            writer = null;
+        }
+        SQLiteDatabase db = this.db;
+        if (db != null) db.close();
+    }
+
+    private FutureTask<SQLiteDatabase> newOpening() {
+        return new FutureTask<>(new Callable<SQLiteDatabase>() {
+            @Override
+            public SQLiteDatabase call() {
+                long start = SystemClock.elapsedRealtime();
+                SQLiteDatabase db = migrations.getWritableDatabase();
+                //the tables are built with the open, otherwise RufusApp builds them right after
+                if (isDefault && config.isDeferredInit() && RufusApp.getTableBuilder() != null)
+                    RufusApp.getTableBuilder().build(db);
+                Database.this.db = db;
+                long end = SystemClock.elapsedRealtime();
+                timeToReady = end - initTime;
+                Log.i("Rufus", String.format("Database %s ready in %s ms, opened in %s ms on %s",
+                        isDefault ? "default" : name, timeToReady, end - start, Thread.currentThread().getName()));
+                return db;
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s)", isDefault ? "default" : name, config.getDatabaseName());
+    }
+}
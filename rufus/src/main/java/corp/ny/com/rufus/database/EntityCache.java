@@ -0,0 +1,173 @@
+package corp.ny.com.rufus.database;
+
+import android.util.LruCache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per table identity map used by {@link Model#find(String)}, entries are evicted in least recently used order
+ * <br>A model enable it by overriding {@link Model#getCacheSize()}, the cache is invalidated by every write
+ * made through the model so a cached row is never older than the table. Each eviction moves the cache to a new
+ * generation, a row read before it is not cached. Rows are only cached outside transactions and the caches
+ * written inside {@link Rufus#transaction(Runnable)} are cleared again when it ends
+ */
+public class EntityCache {
+    private static final Map<String, EntityCache> caches = new HashMap<>();
+    private static final ThreadLocal<Set<EntityCache>> written = new ThreadLocal<>();
+
+    private final String table;
+    private final int capacity;
+    private final LruCache<String, Object> entries;
+    private long generation = 0;
+
+    private EntityCache(String table, int capacity) {
+        this.table = table;
+        this.capacity = capacity;
+        this.entries = new LruCache<>(capacity);
+    }
+
+    /**
+     * Get the cache of a table, it is created on first access
+     *
+     * @param table    the table name
+     * @param capacity maximum number of rows kept
+     * @return the shared cache
+     * @throws IllegalArgumentException if the cache of the table was created with another capacity
+     */
+    public static EntityCache forTable(String table, int capacity) {
+        synchronized (caches) {
+            EntityCache cache = caches.get(table);
+            if (cache == null) {
+                cache = new EntityCache(table, capacity);
+                caches.put(table, cache);
+            } else if (cache.capacity != capacity) {
+                throw new IllegalArgumentException(String.format("The cache of %s holds %s rows, not %s",
+                        table, cache.capacity, capacity));
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @param table the table name
+     * @return the cache of the table or <b>null</b> if it was never used
+     */
+    public static EntityCache find(String table) {
+        synchronized (caches) {
+            return caches.get(table);
+        }
+    }
+
+    /**
+     * Drop every cached row of every table
+     */
+    public static void clearAll() {
+        synchronized (caches) {
+            for (EntityCache cache : caches.values()) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Track the caches evicted by the calling thread until {@link #endTransaction()}
+     */
+    static void beginTransaction() {
+        written.set(new HashSet<EntityCache>());
+    }
+
+    /**
+     * Clear the caches evicted during the transaction, a row another thread read before the commit is dropped
+     */
+    static void endTransaction() {
+        Set<EntityCache> caches = written.get();
+        written.remove();
+        if (caches == null) return;
+        for (EntityCache cache : caches) {
+            cache.clear();
+        }
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of evictions so far, to give to {@link #put(String, Object, long)}
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param id the primary key
+     * @return the cached row or <b>null</b> on miss
+     */
+    public Object get(String id) {
+        return id == null ? null : entries.get(id);
+    }
+
+    public void put(String id, Object model) {
+        if (id != null && model != null)
+            entries.put(id, model);
+    }
+
+    /**
+     * Cache a row unless the cache was evicted since it was read
+     *
+     * @param id         the primary key
+     * @param model      the row
+     * @param generation the value of {@link #getGeneration()} taken before the read
+     */
+    public synchronized void put(String id, Object model, long generation) {
+        if (this.generation == generation)
+            put(id, model);
+    }
+
+    public synchronized void evict(String id) {
+        generation++;
+        written();
+        if (id != null)
+            entries.remove(id);
+    }
+
+    public synchronized void clear() {
+        generation++;
+        written();
+        entries.evictAll();
+    }
+
+    private void written() {
+        Set<EntityCache> caches = written.get();
+        if (caches != null) caches.add(this);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getHitCount() {
+        return entries.hitCount();
+    }
+
+    public int getMissCount() {
+        return entries.missCount();
+    }
+
+    public int getEvictionCount() {
+        return entries.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s cache: %s rows, %s hits, %s misses, %s evictions",
+                table, size(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+}
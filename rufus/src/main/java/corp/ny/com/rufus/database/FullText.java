@@ -0,0 +1,288 @@
+package corp.ny.com.rufus.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.text.TextUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FTS4 shadow table of the searchable columns of a table, named <b>table_fts</b>
+ * <br>Triggers keep it in sync with every insert, update and delete made on the table so
+ * {@link Model#search(String)} can use <b>MATCH</b> instead of scanning with <b>LIKE</b>.
+ * From Jelly Bean the shadow table is an external content table and does not store a copy of the text.
+ * The rows are joined on <b>rowid</b>, call {@link #rebuild(SQLiteDatabase)} after a <b>VACUUM</b> when the
+ * primary key is not an <b>INTEGER PRIMARY KEY</b>. SQLite does not fire delete triggers for a row removed by
+ * <b>INSERT OR REPLACE</b>, its words would stay indexed, so {@link Model#insert(java.util.ArrayList)} updates
+ * such rows in place and raw writes must not replace rows either
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * table.fullText("message");
+ * </pre></blockquote>
+ */
+public class FullText {
+    private static final Map<String, Boolean> known = new HashMap<>();
+
+    private final String table;
+    private final String[] columns;
+    private final boolean externalContent;
+
+    private FullText(String table, String... columns) {
+        this.table = table;
+        this.columns = columns;
+        // content= and prefix= are only understood from SQLite 3.7.9
+        this.externalContent = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    public static FullText instantiate(String table, String... columns) {
+        if (columns.length == 0)
+            throw new IllegalArgumentException(String.format("The full text index of %s needs at least one column", table));
+        return new FullText(table, columns);
+    }
+
+    /**
+     * @param table the content table
+     * @return the name of its shadow table
+     */
+    public static String tableOf(String table) {
+        return String.format("%s_fts", table);
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the statements creating the shadow table and its triggers
+     */
+    public List<String> getStatements() {
+        String fts = tableOf(table);
+        String columnList = join("", ",");
+        List<String> statements = new ArrayList<>();
+        if (externalContent)
+            statements.add(String.format("CREATE VIRTUAL TABLE %s USING fts4(%s, content=\"%s\", prefix=\"2,3\");", fts, columnList, table));
+        else
+            statements.add(String.format("CREATE VIRTUAL TABLE %s USING fts4(%s);", fts, columnList));
+        statements.add(trigger("bu", "BEFORE UPDATE", remove()));
+        statements.add(trigger("bd", "BEFORE DELETE", remove()));
+        statements.add(trigger("au", "AFTER UPDATE", add()));
+        statements.add(trigger("ai", "AFTER INSERT", add()));
+        return statements;
+    }
+
+    /**
+     * Create the shadow table if it is missing and index the rows already stored in the table
+     *
+     * @param db the database
+     */
+    public void create(SQLiteDatabase db) {
+        if (hasShadowTable(db, table)) return;
+        db.beginTransaction();
+        try {
+            for (String statement : getStatements()) {
+                db.execSQL(statement);
+            }
+            rebuild(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        forget(table);
+    }
+
+    /**
+     * Index again every row of the table
+     *
+     * @param db the database
+     */
+    public void rebuild(SQLiteDatabase db) {
+        for (String statement : getRebuildStatements()) {
+            db.execSQL(statement);
+        }
+    }
+
+    /**
+     * @return the statements indexing again every row of the table
+     */
+    public List<String> getRebuildStatements() {
+        String fts = tableOf(table);
+        List<String> statements = new ArrayList<>();
+        if (externalContent) {
+            statements.add(String.format("INSERT INTO %s(%s) VALUES('rebuild');", fts, fts));
+        } else {
+            statements.add(String.format("DELETE FROM %s;", fts));
+            statements.add(String.format("INSERT INTO %s(docid, %s) SELECT rowid, %s FROM %s;", fts, join("", ","), join("", ","), table));
+        }
+        return statements;
+    }
+
+    /**
+     * @param table the content table
+     * @return the statements dropping its shadow table and triggers
+     */
+    public static List<String> getDropStatements(String table) {
+        String fts = tableOf(table);
+        List<String> statements = new ArrayList<>();
+        for (String suffix : new String[]{"bu", "bd", "au", "ai"}) {
+            statements.add(String.format("DROP TRIGGER IF EXISTS %s_%s;", fts, suffix));
+        }
+        statements.add(String.format("DROP TABLE IF EXISTS %s;", fts));
+        return statements;
+    }
+
+    /**
+     * Forget whether the table has a shadow table in any database, to call after it was created or dropped by hand
+     *
+     * @param table the content table
+     */
+    public static void forget(String table) {
+        String suffix = "." + table;
+        synchronized (known) {
+            Iterator<String> keys = known.keySet().iterator();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (key.equals(table) || key.endsWith(suffix)) keys.remove();
+            }
+        }
+    }
+
+    /**
+     * @param database the database holding the table
+     * @param table    the content table
+     * @return true if the table has a shadow table, the answer is remembered per {@link Database#qualify(String)}
+     */
+    public static boolean exists(Database database, String table) {
+        String key = database.qualify(table);
+        synchronized (known) {
+            Boolean exists = known.get(key);
+            if (exists != null) return exists;
+        }
+        boolean exists = hasShadowTable(database.getWritableDatabase(), table);
+        synchronized (known) {
+            known.put(key, exists);
+        }
+        return exists;
+    }
+
+    private static boolean hasShadowTable(SQLiteDatabase db, String table) {
+        Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{tableOf(table)});
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Turn user input into a prefix query, <b>hel wor</b> become <b>hel* wor*</b> so results show up while typing
+     *
+     * @param query the text typed by the user
+     * @return the match expression or <b>null</b> if the query has no word
+     */
+    public static String match(String query) {
+        if (query == null) return null;
+        List<String> terms = new ArrayList<>();
+        for (String token : query.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) terms.add(token + "*");
+        }
+        return terms.isEmpty() ? null : TextUtils.join(" ", terms);
+    }
+
+    /**
+     * Find the rows matching a query, best match first
+     * <br>The score of a row is the sum for each term and column of its hits in the row divided by its hits
+     * in the whole table, so rare words weigh more than common ones
+     *
+     * @param db    the database
+     * @param table the content table
+     * @param query the text typed by the user
+     * @param limit maximum number of rows, <b>0</b> or less for all of them
+     * @return the rowid of the matching rows
+     */
+    public static List<Long> rank(SQLiteDatabase db, String table, String query, int limit) {
+        String expression = match(query);
+        List<Long> rowIds = new ArrayList<>();
+        if (expression == null) return rowIds;
+
+        String fts = tableOf(table);
+        Cursor cursor = db.rawQuery(String.format("SELECT docid, matchinfo(%s, 'pcx') FROM %s WHERE %s MATCH ?", fts, fts, fts),
+                new String[]{expression});
+        final Map<Long, Double> scores = new HashMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                long rowId = cursor.getLong(0);
+                scores.put(rowId, score(cursor.getBlob(1)));
+                rowIds.add(rowId);
+            }
+        } finally {
+            cursor.close();
+        }
+        Collections.sort(rowIds, new Comparator<Long>() {
+            @Override
+            public int compare(Long left, Long right) {
+                return scores.get(right).compareTo(scores.get(left));
+            }
+        });
+        return limit > 0 && rowIds.size() > limit ? new ArrayList<>(rowIds.subList(0, limit)) : rowIds;
+    }
+
+    /**
+     * @param matchInfo the <b>pcx</b> matchinfo blob, unsigned 32 bits integers in machine byte order
+     */
+    static double score(byte[] matchInfo) {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int offset = 2 + 3 * (phrase * columns + column);
+                int hits = info.get(offset);
+                int globalHits = info.get(offset + 1);
+                if (hits > 0 && globalHits > 0) score += (double) hits / globalHits;
+            }
+        }
+        return score;
+    }
+
+    private String trigger(String suffix, String when, String body) {
+        return String.format("CREATE TRIGGER IF NOT EXISTS %s_%s %s ON %s BEGIN %s END;",
+                tableOf(table), suffix, when, table, body);
+    }
+
+    private String add() {
+        return String.format("INSERT INTO %s(docid, %s) VALUES(new.rowid, %s);", tableOf(table), join("", ","), join("new.", ","));
+    }
+
+    /**
+     * FTS4 has no <b>'delete'</b> command, an external content row is removed by docid while the content
+     * table still holds the old values the tokens are read from
+     */
+    private String remove() {
+        return String.format("DELETE FROM %s WHERE docid = old.rowid;", tableOf(table));
+    }
+
+    private String join(String prefix, String separator) {
+        String[] quoted = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            quoted[i] = prefix + Clause.quote(columns[i]);
+        }
+        return TextUtils.join(separator, quoted);
+    }
+
+    @Override
+    public String toString() {
+        return TextUtils.join("\n", getStatements());
+    }
+}
@@ -0,0 +1,102 @@
+package corp.ny.com.rufus.database;
+
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.Log;
+
+/**
+ * A secondary index of a table, built by {@link Schema#index(String...)} or the
+ * {@link corp.ny.com.rufus.database.annotation.Index} annotation
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * table.index("receiverId", "createdAt");
+ * table.index("email").unique().where("email IS NOT NULL");
+ * </pre></blockquote>
+ */
+public class Index {
+    private final String table;
+    private final String[] columns;
+    private String name;
+    private boolean isUnique = false;
+    private String where;
+
+    private Index(String table, String... columns) {
+        this.table = table;
+        this.columns = columns;
+    }
+
+    public static Index instantiate(String table, String... columns) {
+        if (columns.length == 0)
+            throw new IllegalArgumentException(String.format("An index of %s needs at least one column", table));
+        return new Index(table, columns);
+    }
+
+    /**
+     * Override the generated name <b>table_column_index</b>
+     *
+     * @param name the index name
+     * @return the index
+     */
+    public Index name(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public Index unique() {
+        isUnique = true;
+        return this;
+    }
+
+    /**
+     * Make a partial index, only the rows matching the condition are indexed
+     * <br>Partial indexes need SQLite 3.8.0 so <b>API 21</b>, below it the condition is dropped with a warning and
+     * every row is indexed. A unique index cannot be widened that way and is refused
+     *
+     * @param condition like <b>isOpen = 0</b>
+     * @return the index
+     */
+    public Index where(String condition) {
+        this.where = condition;
+        return this;
+    }
+
+    public String getName() {
+        if (name != null && !name.isEmpty()) return name;
+        return String.format("%s_%s_%s", table, TextUtils.join("_", columns), isUnique ? "unique" : "index");
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public boolean isUnique() {
+        return isUnique;
+    }
+
+    public String getWhere() {
+        return where;
+    }
+
+    @Override
+    public String toString() {
+        String where = this.where;
+        if (where != null && !where.isEmpty() && Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            //indexing every row keeps a plain index correct, a unique one would reject rows the condition allows
+            if (isUnique)
+                throw new IllegalStateException(String.format("The partial unique index %s needs API 21", getName()));
+            Log.w("Rufus", String.format("Partial indexes need API 21, %s indexes every row of %s", getName(), table));
+            where = null;
+        }
+        String[] quoted = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            quoted[i] = Clause.quote(columns[i]);
+        }
+        return String.format("CREATE %sINDEX IF NOT EXISTS `%s` ON %s (%s)%s;",
+                isUnique ? "UNIQUE " : "",
+                getName(),
+                table,
+                TextUtils.join(",", quoted),
+                where == null || where.isEmpty() ? "" : String.format(" WHERE %s", where));
+    }
+}
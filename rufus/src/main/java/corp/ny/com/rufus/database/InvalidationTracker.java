@@ -0,0 +1,105 @@
+package corp.ny.com.rufus.database;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publish the tables touched by each write so observers only react to the tables they read
+ * <br>Every write made through {@link Model} notifies its table, a raw query must call
+ * {@link #notifyChanged(String...)} itself. A table of a named database is known by its
+ * {@link Database#qualify(String)} name so a table of the same name in another database is not notified. Rows changed by a foreign key cascade or a trigger are not reported.
+ * Inside {@link Rufus#transaction(Runnable)} notifications wait for the commit
+ */
+public final class InvalidationTracker {
+    private static final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Set<String>> deferred = new ThreadLocal<>();
+
+    private InvalidationTracker() {
+    }
+
+    public static void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    public static void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Tell the observers of these tables that their content changed
+     *
+     * @param tables the written tables, qualified by {@link Database#qualify(String)}
+     */
+    public static void notifyChanged(String... tables) {
+        if (tables.length == 0) return;
+        Set<String> pending = deferred.get();
+        if (pending != null) {
+            pending.addAll(normalize(tables));
+            return;
+        }
+        if (observers.isEmpty()) return;
+        dispatch(normalize(tables));
+    }
+
+    /**
+     * Hold the notifications of the calling thread until {@link #endDeferral(boolean)}
+     */
+    static void beginDeferral() {
+        deferred.set(new HashSet<String>());
+    }
+
+    /**
+     * @param publish true to send the held notifications, false to drop them
+     */
+    static void endDeferral(boolean publish) {
+        Set<String> pending = deferred.get();
+        deferred.remove();
+        if (publish && pending != null && !pending.isEmpty() && !observers.isEmpty())
+            dispatch(pending);
+    }
+
+    static boolean isDeferring() {
+        return deferred.get() != null;
+    }
+
+    static void dispatch(Set<String> tables) {
+        for (Observer observer : observers) {
+            Set<String> observed = observer.getTables();
+            for (String table : tables) {
+                if (observed.contains(table)) {
+                    observer.onInvalidated(Collections.unmodifiableSet(tables));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * SQLite table names are case insensitive
+     *
+     * @return the lower case names
+     */
+    public static Set<String> normalize(String... tables) {
+        Set<String> names = new HashSet<>();
+        for (String table : tables) {
+            names.add(table.toLowerCase(Locale.US));
+        }
+        return names;
+    }
+
+    /**
+     * Receive table change notifications, it is called on the writing thread and must return quickly
+     */
+    public interface Observer {
+        /**
+         * @return the observed tables in lower case, see {@link #normalize(String...)}
+         */
+        Set<String> getTables();
+
+        void onInvalidated(Set<String> tables);
+    }
+}
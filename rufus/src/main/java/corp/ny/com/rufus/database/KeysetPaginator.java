@@ -0,0 +1,384 @@
+package corp.ny.com.rufus.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Seek pagination, the order by key of the first and last row of the current page are remembered and the
+ * next page start right after them
+ * <br>Unlike <b>LIMIT offset,limit</b> SQLite does not read and discard the previous rows so every page cost
+ * the same index seek whatever its depth. The primary key is appended to the sort keys when missing so the
+ * order is total, sort key columns should be <b>NOT NULL</b>. Key values are bound with the type they were read
+ * with so a <b>REAL</b> key keeps its precision and compares as a number
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * KeysetPaginator&lt;Message&gt; pages = new Message().where("receiverId", 1).keyset();
+ * ArrayList&lt;Message&gt; page = pages.next();
+ * page = pages.next();
+ * page = pages.previous();
+ * </pre></blockquote>
+ *
+ * @param <T> the model type
+ */
+public class KeysetPaginator<T> {
+    private final Model<T> model;
+    private final List<SortKey> keys;
+    private final String selection;
+    private final String[] selectionArgs;
+    private final int limit;
+    private Object[] first;
+    private Object[] last;
+    private int position = 0;
+    private boolean pastEnd = false;
+
+    /**
+     * @param model  the model to page through
+     * @param filter optional clauses every page must match, its order by and limit win over
+     *               {@link Model#getOrderBy()} and {@link Model#getLimit()}
+     */
+    public KeysetPaginator(Model<T> model, QueryBuilder<T> filter) {
+        this(model, filter,
+                filter == null || filter.getOrderBy() == null ? model.getOrderBy() : filter.getOrderBy(),
+                filter == null || filter.getLimit() < 0 ? model.getLimit() : filter.getLimit());
+    }
+
+    /**
+     * @param model   the model to page through
+     * @param filter  optional clauses every page must match
+     * @param orderBy sort keys like <b>createdAt DESC, id</b>
+     * @param limit   rows per page
+     */
+    public KeysetPaginator(Model<T> model, QueryBuilder<T> filter, String orderBy, int limit) {
+        this.model = model;
+        this.keys = SortKey.parse(orderBy, model.getIdName());
+        this.selection = filter == null ? null : filter.getSelection();
+        this.selectionArgs = filter == null ? new String[0] : filter.getSelectionArgs();
+        this.limit = limit;
+    }
+
+    /**
+     * @return number of rows between the beginning of the result and the end of the current page
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Go back to the first page
+     */
+    public KeysetPaginator<T> reset() {
+        first = null;
+        last = null;
+        position = 0;
+        pastEnd = false;
+        return this;
+    }
+
+    /**
+     * Start right after the given sort key values
+     *
+     * @param values one value per sort key, the primary key included
+     */
+    public KeysetPaginator<T> after(Object... values) {
+        last = values;
+        first = null;
+        pastEnd = false;
+        return this;
+    }
+
+    /**
+     * Start right before the given sort key values
+     *
+     * @param values one value per sort key, the primary key included
+     */
+    public KeysetPaginator<T> before(Object... values) {
+        first = values;
+        last = null;
+        pastEnd = false;
+        return this;
+    }
+
+    /**
+     * Start right after the row identified by id
+     *
+     * @param id the primary key of the row
+     * @throws IllegalArgumentException if the row is gone and the table is not only sorted by id
+     */
+    public KeysetPaginator<T> afterRow(String id) {
+        return after(keyOf(id));
+    }
+
+    /**
+     * Start right before the row identified by id
+     *
+     * @param id the primary key of the row
+     * @throws IllegalArgumentException if the row is gone and the table is not only sorted by id
+     */
+    public KeysetPaginator<T> beforeRow(String id) {
+        return before(keyOf(id));
+    }
+
+    /**
+     * Position the paginator after the first rows, this cost a single offset scan
+     *
+     * @param offset number of rows to skip
+     */
+    public KeysetPaginator<T> skip(int offset) {
+        reset();
+        if (offset <= 0) return this;
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = select(keyColumns(), args);
+        sql.append(" ORDER BY ").append(orderBy(true)).append(" LIMIT 1 OFFSET ?");
+        args.add((long) offset - 1);
+        last = readKey(sql.toString(), args);
+        position = offset;
+        pastEnd = last == null;
+        return this;
+    }
+
+    /**
+     * @return the page following the current one or an <b>empty list</b> at the end
+     */
+    public ArrayList<T> next() {
+        if (pastEnd) return new ArrayList<>();
+        ArrayList<T> page = fetch(true);
+        position += page.size();
+        return page;
+    }
+
+    /**
+     * @return the page preceding the current one or an <b>empty list</b> at the beginning
+     */
+    public ArrayList<T> previous() {
+        pastEnd = false;
+        ArrayList<T> page = fetch(false);
+        position = Math.max(0, position - page.size());
+        return page;
+    }
+
+    private ArrayList<T> fetch(boolean forward) {
+        Object[] anchor = forward ? last : first;
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = select("*", args);
+        if (anchor != null)
+            sql.append(selection == null ? " WHERE " : " AND ").append(seek(anchor, forward, args));
+        sql.append(" ORDER BY ").append(orderBy(forward)).append(" LIMIT ?");
+        args.add((long) limit);
+
+        long start = Metrics.start();
+        ArrayList<T> page = new ArrayList<>();
+        Cursor cursor = query(sql.toString(), args);
+        if (cursor == null) return page;
+        try {
+            int[] indexes = new int[keys.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = cursor.getColumnIndex(keys.get(i).column);
+            }
+            Object[] head = null;
+            while (cursor.moveToNext()) {
+                if (head == null) head = readKey(cursor, indexes);
+                page.add(model.cursorToModel(cursor));
+            }
+            if (head != null && cursor.moveToLast()) {
+                Object[] tail = readKey(cursor, indexes);
+                if (forward) {
+                    first = head;
+                    last = tail;
+                } else {
+                    first = tail;
+                    last = head;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        if (start != 0)
+            Metrics.record(model.getDb(), model.getTableName(), Metrics.Type.PAGINATE, sql.toString(), sql.toString(),
+                    toStrings(args), page.size(), start, false);
+        if (!forward) Collections.reverse(page);
+        return page;
+    }
+
+    /**
+     * Build the condition matching rows after (or before) the anchor
+     * <br>(k1 &gt; v1) OR (k1 = v1 AND k2 &gt; v2) ..., the first key is repeated as a range so an index can seek on it
+     */
+    private String seek(Object[] anchor, boolean forward, List<Object> args) {
+        if (anchor.length != keys.size())
+            throw new IllegalArgumentException(String.format("Expected %s sort key values but got %s", keys.size(), anchor.length));
+        SortKey head = keys.get(0);
+        StringBuilder condition = new StringBuilder();
+        condition.append(Clause.quote(head.column)).append(head.isAfter(forward) ? " >= ?" : " <= ?");
+        args.add(anchor[0]);
+        condition.append(" AND (");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) condition.append(" OR ");
+            condition.append('(');
+            for (int j = 0; j < i; j++) {
+                condition.append(Clause.quote(keys.get(j).column)).append(" = ? AND ");
+                args.add(anchor[j]);
+            }
+            condition.append(Clause.quote(keys.get(i).column)).append(keys.get(i).isAfter(forward) ? " > ?" : " < ?");
+            args.add(anchor[i]);
+            condition.append(')');
+        }
+        return condition.append(')').toString();
+    }
+
+    private StringBuilder select(String columns, List<Object> args) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(" FROM ").append(model.getTableName());
+        if (selection != null) {
+            sql.append(" WHERE ").append(selection);
+            Collections.addAll(args, selectionArgs);
+        }
+        return sql;
+    }
+
+    private String orderBy(boolean forward) {
+        StringBuilder orderBy = new StringBuilder();
+        for (SortKey key : keys) {
+            if (orderBy.length() > 0) orderBy.append(", ");
+            orderBy.append(Clause.quote(key.column)).append(key.descending == forward ? " DESC" : " ASC");
+        }
+        return orderBy.toString();
+    }
+
+    private String keyColumns() {
+        StringBuilder columns = new StringBuilder();
+        for (SortKey key : keys) {
+            if (columns.length() > 0) columns.append(", ");
+            columns.append(Clause.quote(key.column));
+        }
+        return columns.toString();
+    }
+
+    /**
+     * @return the sort key values of a row or the id itself when the table is only sorted by id and the row is gone
+     */
+    private Object[] keyOf(String id) {
+        List<Object> args = new ArrayList<>();
+        args.add(id);
+        Object[] key = readKey(String.format("SELECT %s FROM %s WHERE %s = ?", keyColumns(), model.getTableName(), Clause.quote(model.getIdName())), args);
+        if (key == null && keys.size() == 1) key = new Object[]{id};
+        //restarting from the first page would hand out the same rows again
+        if (key == null)
+            throw new IllegalArgumentException(String.format("The row %s of %s is gone, its sort key is unknown", id, model.getTableName()));
+        return key;
+    }
+
+    private Object[] readKey(String sql, List<Object> args) {
+        Cursor cursor = query(sql, args);
+        if (cursor == null) return null;
+        try {
+            if (!cursor.moveToFirst()) return null;
+            int[] indexes = new int[cursor.getColumnCount()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+            return readKey(cursor, indexes);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static Object[] readKey(Cursor cursor, int[] indexes) {
+        Object[] key = new Object[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            switch (cursor.getType(indexes[i])) {
+                case Cursor.FIELD_TYPE_NULL:
+                    key[i] = null;
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    key[i] = cursor.getLong(indexes[i]);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    key[i] = cursor.getDouble(indexes[i]);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    key[i] = cursor.getBlob(indexes[i]);
+                    break;
+                default:
+                    key[i] = cursor.getString(indexes[i]);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Run a query binding each argument with its own type, {@link SQLiteDatabase#rawQuery(String, String[])}
+     * binds them all as text
+     */
+    private Cursor query(String sql, final List<Object> args) {
+        return model.getDb().rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+                for (int i = 0; i < args.size(); i++) {
+                    Object value = args.get(i);
+                    if (value == null) query.bindNull(i + 1);
+                    else if (value instanceof Long) query.bindLong(i + 1, (Long) value);
+                    else if (value instanceof Double) query.bindDouble(i + 1, (Double) value);
+                    else if (value instanceof byte[]) query.bindBlob(i + 1, (byte[]) value);
+                    else query.bindString(i + 1, value.toString());
+                }
+                return new SQLiteCursor(driver, editTable, query);
+            }
+        }, sql, null, null);
+    }
+
+    private static String[] toStrings(List<Object> args) {
+        String[] values = new String[args.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = args.get(i);
+            values[i] = value == null ? null : String.valueOf(value);
+        }
+        return values;
+    }
+
+    /**
+     * A column of the order by and its direction
+     */
+    static class SortKey {
+        final String column;
+        final boolean descending;
+
+        SortKey(String column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        /**
+         * Parse an order by like <b>createdAt DESC, id</b>, the primary key is appended when missing
+         */
+        static List<SortKey> parse(String orderBy, String idName) {
+            List<SortKey> keys = new ArrayList<>();
+            boolean hasId = false;
+            if (orderBy != null) {
+                for (String term : orderBy.split(",")) {
+                    String[] parts = term.trim().split("\\s+");
+                    if (parts[0].isEmpty()) continue;
+                    String column = parts[0].replace("`", "");
+                    boolean descending = parts.length > 1 && parts[parts.length - 1].equalsIgnoreCase("DESC");
+                    keys.add(new SortKey(column, descending));
+                    hasId |= column.equals(idName);
+                }
+            }
+            if (!hasId) keys.add(new SortKey(idName, false));
+            return keys;
+        }
+
+        /**
+         * @return true if following rows hold a greater value
+         */
+        boolean isAfter(boolean forward) {
+            return descending != forward;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package corp.ny.com.rufus.database;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency distribution of one query shape in power of two buckets of microseconds
+ * <br>Recording is a few atomic increments and never allocates, percentiles are the upper bound of the bucket
+ * they fall in so they are accurate within a factor of two
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 32;
+
+    private final String shape;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram(String shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * @param nanos the duration of an operation
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        // bucket i holds durations below 2^i microseconds
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMicros() {
+        long count = this.count.get();
+        return count == 0 ? 0 : totalNanos.get() / 1000d / count;
+    }
+
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000d;
+    }
+
+    /**
+     * @param percentile between 0 and 100, like 99 for the p99
+     * @return the duration under which this share of the operations ran, in microseconds
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = this.count.get();
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, rank)) return 1L << i;
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s count=%d mean=%.1fus p50<%dus p90<%dus p99<%dus max=%.1fus",
+                shape, getCount(), getMeanMicros(), getPercentileMicros(50), getPercentileMicros(90),
+                getPercentileMicros(99), getMaxMicros());
+    }
+}
@@ -0,0 +1,248 @@
+package corp.ny.com.rufus.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Instrumentation of the model operations
+ * <br>Nothing is measured until a {@link Listener} is set, latency histograms are enabled or a slow query
+ * threshold is given, a disabled operation costs one volatile read. Histograms are kept per query shape,
+ * the SQL with its values bound as <b>?</b>. An operation slower than the threshold is logged with the
+ * output of <b>EXPLAIN QUERY PLAN</b>
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * Metrics.setSlowQueryThreshold(50);
+ * Metrics.setHistogramsEnabled(true);
+ * ...
+ * for (LatencyHistogram histogram : Metrics.getHistograms().values()) Log.d("Rufus", histogram.toString());
+ * </pre></blockquote>
+ */
+public final class Metrics {
+    /**
+     * Histograms beyond this number of shapes are not kept
+     */
+    public static final int MAX_SHAPES = 500;
+    private static final String TAG = "Rufus";
+
+    /**
+     * Listener doing nothing, the default one
+     */
+    public static final Listener NONE = new Listener() {
+        @Override
+        public void onOperation(Event event) {
+        }
+
+        @Override
+        public void onSlowQuery(Event event, List<String> plan) {
+        }
+    };
+
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static volatile Listener listener = NONE;
+    private static volatile boolean histogramsEnabled = false;
+    private static volatile long slowQueryNanos = 0;
+    private static volatile boolean enabled = false;
+
+    private Metrics() {
+    }
+
+    /**
+     * @param listener receive every operation on the thread that ran it, <b>null</b> restores {@link #NONE}
+     */
+    public static void setListener(Listener listener) {
+        Metrics.listener = listener == null ? NONE : listener;
+        update();
+    }
+
+    public static Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Keep a latency histogram per query shape, see {@link #getHistograms()}
+     */
+    public static void setHistogramsEnabled(boolean enabled) {
+        histogramsEnabled = enabled;
+        update();
+    }
+
+    /**
+     * @param millis duration from which an operation is logged with its query plan, <b>0</b> to disable
+     */
+    public static void setSlowQueryThreshold(long millis) {
+        slowQueryNanos = Math.max(0, millis) * 1000000;
+        update();
+    }
+
+    private static void update() {
+        enabled = listener != NONE || histogramsEnabled || slowQueryNanos > 0;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the histograms by query shape
+     */
+    public static Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Drop every histogram
+     */
+    public static void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * @return the start time of an operation or <b>0</b> when nothing is measured
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Report an operation started with {@link #start()}
+     *
+     * @param db       the database it ran on
+     * @param table    the table
+     * @param type     the kind of operation
+     * @param shape    the SQL with its values as <b>?</b>
+     * @param sql      the SQL to explain, <b>null</b> for a write made through {@link BatchInsert}
+     * @param args     the values bound to sql
+     * @param rows     the number of rows read or written
+     * @param start    the value returned by {@link #start()}
+     * @param cacheHit true if the rows came from the {@link EntityCache}
+     */
+    static void record(SQLiteDatabase db, String table, Type type, String shape, String sql, String[] args,
+                       int rows, long start, boolean cacheHit) {
+        if (start == 0) return;
+        long nanos = System.nanoTime() - start;
+        Event event = new Event(table, type, shape, rows, nanos, cacheHit);
+        listener.onOperation(event);
+
+        // a cache hit tells nothing about the query
+        if (histogramsEnabled && !cacheHit) {
+            LatencyHistogram histogram = histograms.get(shape);
+            if (histogram == null && histograms.size() < MAX_SHAPES) {
+                //two threads may meet a new shape at once, both must record into the same histogram
+                LatencyHistogram created = new LatencyHistogram(shape);
+                histogram = histograms.putIfAbsent(shape, created);
+                if (histogram == null) histogram = created;
+            }
+            if (histogram != null) histogram.record(nanos);
+        }
+
+        long threshold = slowQueryNanos;
+        if (threshold > 0 && nanos >= threshold && !cacheHit) {
+            List<String> plan = sql == null ? Collections.<String>emptyList() : explain(db, sql, args);
+            Log.w(TAG, String.format(Locale.US, "Slow %s on %s: %.1f ms, %d rows\n%s\n%s",
+                    type, table, nanos / 1e6, rows, shape, TextUtils.join("\n", plan)));
+            listener.onSlowQuery(event, plan);
+        }
+    }
+
+    private static List<String> explain(SQLiteDatabase db, String sql, String[] args) {
+        List<String> plan = new ArrayList<>();
+        try {
+            Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            try {
+                int detail = cursor.getColumnIndex("detail");
+                while (cursor.moveToNext()) {
+                    plan.add(detail < 0 ? cursor.getString(cursor.getColumnCount() - 1) : cursor.getString(detail));
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (RuntimeException e) {
+            // the plan is a hint, the operation itself already succeeded
+            plan.add(String.format("no plan: %s", e.getMessage()));
+        }
+        return plan;
+    }
+
+    public enum Type {
+        SELECT, FIND, SEARCH, PAGINATE, COUNT, AGGREGATE, INSERT, UPSERT, UPDATE, DELETE
+    }
+
+    /**
+     * Receive the operations, it runs on the calling thread and must return quickly
+     */
+    public interface Listener {
+        void onOperation(Event event);
+
+        /**
+         * @param event the operation
+         * @param plan  the lines of <b>EXPLAIN QUERY PLAN</b>, empty for a write made through {@link BatchInsert}
+         *              whose values are not kept
+         */
+        void onSlowQuery(Event event, List<String> plan);
+    }
+
+    /**
+     * One operation of a model
+     */
+    public static final class Event {
+        private final String table;
+        private final Type type;
+        private final String shape;
+        private final int rows;
+        private final long nanos;
+        private final boolean cacheHit;
+
+        Event(String table, Type type, String shape, int rows, long nanos, boolean cacheHit) {
+            this.table = table;
+            this.type = type;
+            this.shape = shape;
+            this.rows = rows;
+            this.nanos = nanos;
+            this.cacheHit = cacheHit;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return the SQL with its values as <b>?</b>
+         */
+        public String getShape() {
+            return shape;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public boolean isCacheHit() {
+            return cacheHit;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %s %d rows in %.3f ms%s: %s",
+                    type, table, rows, nanos / 1e6, cacheHit ? " (cache)" : "", shape);
+        }
+    }
+}
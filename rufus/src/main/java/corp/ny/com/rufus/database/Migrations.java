@@ -1,6 +1,7 @@
 package corp.ny.com.rufus.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Build;
@@ -9,8 +10,8 @@ import android.util.SparseArray;
 
 import java.util.ArrayList;
 
+import corp.ny.com.rufus.system.DatabaseConfig;
 import corp.ny.com.rufus.system.RufusApp;
-import corp.ny.com.rufus.utils.ManifestReader;
 
 
 /**
@@ -19,41 +20,109 @@ import corp.ny.com.rufus.utils.ManifestReader;
 
 public class Migrations extends SQLiteOpenHelper {
     private SparseArray<ArrayList<Schema>> schemas = new SparseArray<>();
+    private final DatabaseConfig config;
+    private boolean tableBuilderEnabled = true;
 
     public Migrations(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
+        this(context, name, factory, version, DatabaseConfig.fromManifest());
+    }
+
+    public Migrations(Context context, String name, SQLiteDatabase.CursorFactory factory, int version, DatabaseConfig config) {
         super(context, name, factory, version);
+        this.config = config;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            setWriteAheadLoggingEnabled(config.isWriteAheadLogging());
+    }
+
+    public DatabaseConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Do not call the {@link RufusApp.TableBuilder} of the application, its tables belong to another database
+     */
+    void disableTableBuilder() {
+        tableBuilderEnabled = false;
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        if (RufusApp.getTableBuilder() != null) {
+        if (tableBuilderEnabled && RufusApp.getTableBuilder() != null) {
             RufusApp.getTableBuilder().build(db);
             RufusApp.getTableBuilder().onUpgrade();
         }
-        for (int i = 0; i < schemas.size() ; i++) {
-                for (Schema s : schemas.get(schemas.keyAt(0))) {
-                    db.execSQL(s.toString());
-                }
+        for (int i = 0; i < schemas.size(); i++) {
+            for (Schema s : schemas.valueAt(i)) {
+                SchemaMigrator.migrate(db, s);
+            }
         }
     }
 
     @Override
     public void onConfigure(SQLiteDatabase db) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-            db.setForeignKeyConstraintsEnabled(ManifestReader.getMetadataBoolean("FOREIGN_KEY_CONSTRAINTS_ENABLED"));
-        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            tune(db);
         super.onConfigure(db);
     }
 
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        // foreign keys are enforced once the tables are migrated, a table rebuild drops the parent table
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly())
+            db.setForeignKeyConstraintsEnabled(config.isForeignKeys());
+        // onConfigure is not called before Jelly Bean
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            if (config.isWriteAheadLogging() && !db.isReadOnly())
+                db.enableWriteAheadLogging();
+            tune(db);
+        }
+        super.onOpen(db);
+    }
+
+    /**
+     * Apply the pragmas of the configuration on the primary connection, the one running every write and
+     * transaction. The read connections opened for write-ahead logging keep the SQLite defaults, only the
+     * statement cache size is applied to the whole pool
+     */
+    private void tune(SQLiteDatabase db) {
+        if (config.getPageSize() > 0)
+            db.setPageSize(config.getPageSize());
+        if (config.getStatementCacheSize() > 0)
+            db.setMaxSqlCacheSize(Math.min(config.getStatementCacheSize(), SQLiteDatabase.MAX_SQL_CACHE_SIZE));
+        if (config.getCacheSize() != 0)
+            pragma(db, "cache_size", String.valueOf(config.getCacheSize()));
+        if (config.getSynchronous() != null)
+            pragma(db, "synchronous", config.getSynchronous());
+        if (config.getMmapSize() > 0)
+            pragma(db, "mmap_size", String.valueOf(config.getMmapSize()));
+        if (config.getJournalSizeLimit() > 0)
+            pragma(db, "journal_size_limit", String.valueOf(config.getJournalSizeLimit()));
+    }
+
+    /**
+     * Some pragmas return a row so they must run as a query, unknown pragmas are ignored by SQLite
+     */
+    private static void pragma(SQLiteDatabase db, String name, String value) {
+        Cursor cursor = db.rawQuery(String.format("PRAGMA %s = %s", name, value), null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Bring the tables of every version above <b>oldVersion</b> to their schema with {@link SchemaMigrator},
+     * the whole upgrade runs in the transaction opened by {@link SQLiteOpenHelper}
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        if (RufusApp.getTableBuilder() != null)
+        if (tableBuilderEnabled && RufusApp.getTableBuilder() != null)
             RufusApp.getTableBuilder().onUpgrade();
-        for (int i = 0; i < schemas.size() ; i++) {
-            int currentVersion = schemas.keyAt(0);
-            if (currentVersion>oldVersion)
-                for (Schema s : schemas.get(currentVersion)) {
-                    db.execSQL(s.toString());
+        for (int i = 0; i < schemas.size(); i++) {
+            if (schemas.keyAt(i) > oldVersion)
+                for (Schema s : schemas.valueAt(i)) {
+                    SchemaMigrator.migrate(db, s);
                 }
         }
     }
@@ -1,25 +1,23 @@
 package corp.ny.com.rufus.database;
 
 import android.content.ContentValues;
-import android.database.CharArrayBuffer;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
-
-import com.google.common.base.Defaults;
+import android.util.Log;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import corp.ny.com.rufus.database.annotation.Column;
 import corp.ny.com.rufus.database.annotation.Table;
 import corp.ny.com.rufus.database.exceptions.TableException;
-import corp.ny.com.rufus.system.RufusApp;
 
 
 /**
@@ -28,6 +26,7 @@ import corp.ny.com.rufus.system.RufusApp;
  */
 
 public abstract class Model<T> implements Cloneable, Serializable {
+    private static final String TAG = "Rufus";
 
     //getTable() identify
     private String idName = "id";
@@ -36,9 +35,12 @@ public abstract class Model<T> implements Cloneable, Serializable {
     private String searchable;
     //in case of need of cursor value
     //private Cursor cloneCursor;
-    private List<Clause> clauses = new ArrayList<Clause>();
-    private String groupBy;
-    private String orderBy;
+    private transient QueryBuilder<T> query;
+    private transient KeysetPaginator<T> pager;
+    //column values when the model was read, see TableMetadata#snapshot
+    private transient Object[] snapshot;
+    private transient String[] eager;
+    private transient Database database;
 
 
     /**
@@ -48,35 +50,11 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * @param fieldName the field name of the desired value
      */
     public static void fillAttribute(Object object, String fieldName, Cursor cursor) throws ClassNotFoundException {
-        Class c = Class.forName(object.getClass().getName());
-        for (Field field : c.getDeclaredFields()) {
-            //skip if it is not the target field
-            if (!field.getName().equals(fieldName)) continue;
-            //make field accessible for reading
-            if (field.getModifiers() == Modifier.PRIVATE) {
-                field.setAccessible(true);
-            }
-
-            try {
-                int index = cursor.getColumnIndex(fieldName);
-                if (cursor.getType(index) == Cursor.FIELD_TYPE_STRING)
-                    field.set(object, cursor.getString(index));
-                else if (cursor.getType(index) == Cursor.FIELD_TYPE_FLOAT)
-                    field.setFloat(object, cursor.getFloat(index));
-                else if (cursor.getType(index) == Cursor.FIELD_TYPE_INTEGER) {
-                    if (field.getType() == boolean.class)
-                        field.setBoolean(object, cursor.getInt(index)==1);
-                    else
-                        field.setInt(object, cursor.getInt(index));
-                } else {
-                    CharArrayBuffer buffer = new CharArrayBuffer(1024 * 4);
-                    cursor.copyStringToBuffer(index, buffer);
-                    //field.set(object, buffer.toString());
-                }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            }
-        }
+        TableMetadata.Attribute attribute = TableMetadata.of(object.getClass()).getAttribute(fieldName);
+        int index = cursor.getColumnIndex(fieldName);
+        //skip if there is no target field
+        if (attribute == null || index < 0) return;
+        attribute.read(object, cursor, index);
     }
 
     /**
@@ -85,7 +63,40 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * @return {@linkplain SQLiteDatabase} instance
      */
     protected SQLiteDatabase getDb() {
-        return RufusApp.getDataBaseInstance();
+        return getDatabase().getWritableDatabase();
+    }
+
+    /**
+     * Define the database holding the table, override it to pick a shard from the values of the model
+     *
+     * @return the database given to {@link #on(Database)} or the one named by {@link #getDatabaseName()}
+     */
+    protected Database getDatabase() {
+        return database != null ? database : Database.get(getDatabaseName());
+    }
+
+    /**
+     * @return the name given by {@link Table#database()}, <b>null</b> for the default database
+     */
+    protected String getDatabaseName() {
+        Table table = getClass().getAnnotation(Table.class);
+        return table == null ? null : table.database();
+    }
+
+    /**
+     * Run the next operations of this model and of the rows it reads on another database
+     * <p> <b>example</b><br>
+     * <blockquote>
+     * <pre>
+     * new Message().on(shards.of(conversationId)).where("conversationId", conversationId).get();
+     * </pre></blockquote>
+     *
+     * @param database the database
+     * @return the model
+     */
+    public Model<T> on(Database database) {
+        this.database = database;
+        return this;
     }
 
     /**
@@ -112,19 +123,9 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * @return id value
      */
     public String getIdValue(){
-        for (Field field : getClass().getDeclaredFields()) {
-            field.setAccessible(true);
-            if (field.isAnnotationPresent(corp.ny.com.rufus.database.annotation.Column.class)) {
-                if (field.getAnnotation(Column.class).primary()) {
-                    try {
-                        return String.valueOf(field.get(this));
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }
-        return null;
+        TableMetadata.Attribute primary = TableMetadata.of(getClass()).getPrimary();
+        if (primary == null) return null;
+        return String.valueOf(primary.get(this));
     }
 
     /**
@@ -155,6 +156,57 @@ public abstract class Model<T> implements Cloneable, Serializable {
         return 5;
     }
 
+    /**
+     * Define the number of rows committed per transaction by {@link #insert(ArrayList)}
+     *
+     * @return rows per batch
+     * DefResponse value is <b>500</b>
+     */
+    public int getBatchSize() {
+        return BatchInsert.DEFAULT_CHUNK_SIZE;
+    }
+
+    /**
+     * Define how many rows {@link #find(String)} keep in memory, the cache is shared by every instance of the table
+     *
+     * @return maximum number of cached rows, <b>0</b> disable the cache
+     * DefResponse value is <b>0</b>
+     */
+    public int getCacheSize() {
+        return 0;
+    }
+
+    /**
+     * @return the row cache of the table or <b>null</b> if it is disabled
+     */
+    public EntityCache getCache() {
+        int size = getCacheSize();
+        return size > 0 ? EntityCache.forTable(getDatabase().qualify(getTableName()), size) : null;
+    }
+
+    /**
+     * Publish a write on the table of this model, see {@link InvalidationTracker}
+     */
+    private void changed() {
+        InvalidationTracker.notifyChanged(getDatabase().qualify(getTableName()));
+    }
+
+    private void evict(String id) {
+        EntityCache cache = getCache();
+        if (cache != null) cache.evict(id);
+    }
+
+    /**
+     * Cached rows are never handed out, callers get their own copy
+     */
+    private T copy(Object model) {
+        try {
+            return (T) ((Model<T>) model).clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public int getLastPage() {
         return lastPage;
     }
@@ -164,19 +216,58 @@ public abstract class Model<T> implements Cloneable, Serializable {
     }
 
     /**
-     * Insert values into a table
+     * Insert values into a table or update the row holding the same primary key
+     * <br>A single <b>INSERT ... ON CONFLICT DO UPDATE</b> is run when SQLite support it, see {@link BatchInsert#upsert(String)}
      *
      * @return the model inserted into the table on <b>null</b> if something went wrong
      */
     public T save() {
+        //a model read from the table only writes its changes
+        if (snapshot != null) {
+            T updated = update();
+            if (updated != null) return updated;
+        }
+        TableMetadata metadata = TableMetadata.of(getClass());
+        TableMetadata.Attribute primary = metadata.getPrimary();
+        //a model building its own values is written through them
+        if (!metadata.isAnnotated() || primary == null || !metadata.isTracked())
+            return insertOrUpdate();
         try {
-            long success = getDb().insertWithOnConflict(getTableName(), null, sqlQueryBuilder(new ContentValues()), SQLiteDatabase.CONFLICT_FAIL);
+            long start = Metrics.start();
+            BatchInsert<T> insert = BatchInsert.<T>into(getDb(), getTableName(), getClass())
+                    .upsert(primary.getName());
+            long rowId = insert.execute((T) this);
+            if (start != 0) record(Metrics.Type.UPSERT, insert, rowId == -1 ? 0 : 1, start);
+            if (rowId == -1) return null;
+            //an auto increment id left to 0 was generated by the insert
+            String id = primary.getColumn().increment() && "0".equals(getIdValue()) ? String.valueOf(rowId) : getIdValue();
+            evict(id);
+            changed();
+            return find(id);
+        } catch (SQLiteConstraintException e) {
+            Log.w(TAG, String.format("Save of %s failed: %s", getTableName(), e.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * Save a model without primary key annotation, the insert fails on an existing row and is retried as an update
+     */
+    private T insertOrUpdate() {
+        try {
+            long start = Metrics.start();
+            ContentValues values = sqlQueryBuilder(new ContentValues());
+            long success = getDb().insertWithOnConflict(getTableName(), null, values, SQLiteDatabase.CONFLICT_FAIL);
+            if (start != 0)
+                record(Metrics.Type.INSERT, String.format("INSERT INTO %s (%s) VALUES (%s)", getTableName(),
+                        TextUtils.join(", ", values.keySet()), TextUtils.join(", ", Collections.nCopies(values.size(), "?"))),
+                        null, success > 0 ? 1 : 0, start);
             if (success > 0) {
-                 System.out.printf("New %s : %s\n",getTableName(),String.valueOf(success));
+                evict(String.valueOf(success));
+                changed();
                 return find(success);
             }
         } catch (SQLiteConstraintException e) {
-            System.out.printf("Save failed with reason ==> %s ==> Attempt to UPDATE\n",e.getMessage());
             return update();
         }
         return null;
@@ -184,36 +275,84 @@ public abstract class Model<T> implements Cloneable, Serializable {
 
     /**
      * Insert values into a table
+     * <br>rows are written through one compiled statement and committed by {@link #getBatchSize()}
      *
-     * @return the model inserted into the table on <b>null</b> if something went wrong
+     * @return the timing of each committed batch
      */
-    public void insert(T... models) {
-        try {
-            getDb().beginTransaction();
-            for (T model : models) {
-                getDb().insertWithOnConflict(getTableName(), null, prepareStatement( new ContentValues()),SQLiteDatabase.CONFLICT_REPLACE);
-            }
-            getDb().setTransactionSuccessful();
-        } finally {
-            getDb().endTransaction();
-        }
+    public BatchInsert.Report insert(T... models) {
+        return insertAll(Arrays.asList(models));
     }
 
 
     /**
      * Insert values into a table
+     * <br>rows are written through one compiled statement and committed by {@link #getBatchSize()}.
+     * An existing row is replaced, or updated in place like {@link #upsert(ArrayList)} when the table has a
+     * full text index
      *
-     * @return the model inserted into the table on <b>null</b> if something went wrong
+     * @return the timing of each committed batch
+     */
+    public BatchInsert.Report insert(ArrayList<T> models) {
+        return insertAll(models);
+    }
+
+    /**
+     * Insert new models and update the existing ones in place, one statement per model
+     * <br>Unlike {@link #insert(ArrayList)} an existing row is never deleted and inserted again
+     *
+     * @return the timing of each committed batch
+     */
+    public BatchInsert.Report upsert(T... models) {
+        return upsertAll(Arrays.asList(models));
+    }
+
+    /**
+     * Insert new models and update the existing ones in place, one statement per model
+     * <br>rows are written through compiled statements and committed by {@link #getBatchSize()}
+     *
+     * @return the timing of each committed batch
      */
-    public void insert(ArrayList<T> models) {
+    public BatchInsert.Report upsert(ArrayList<T> models) {
+        return upsertAll(models);
+    }
+
+    private BatchInsert.Report upsertAll(List<T> models) {
+        TableMetadata.Attribute primary = TableMetadata.of(getClass()).getPrimary();
+        long start = Metrics.start();
+        BatchInsert<T> insert = BatchInsert.<T>into(getDb(), getTableName(), getClass())
+                .upsert(primary == null ? getIdName() : primary.getName())
+                .chunkSize(getBatchSize());
+        BatchInsert.Report report = execute(insert, models);
+        if (start != 0) record(Metrics.Type.UPSERT, insert, report.getInserted(), start);
+        if (report.getInserted() > 0) changed();
+        return report;
+    }
+
+    private BatchInsert.Report insertAll(List<T> models) {
+        //the row removed by a REPLACE does not fire the delete triggers keeping the full text index in sync
+        if (FullText.exists(getDatabase(), getTableName())) return upsertAll(models);
+        long start = Metrics.start();
+        BatchInsert<T> insert = BatchInsert.<T>into(getDb(), getTableName(), getClass())
+                .conflict(SQLiteDatabase.CONFLICT_REPLACE)
+                .chunkSize(getBatchSize());
+        BatchInsert.Report report = execute(insert, models);
+        if (start != 0) record(Metrics.Type.INSERT, insert, report.getInserted(), start);
+        if (report.getInserted() > 0) changed();
+        return report;
+    }
+
+    /**
+     * Run a bulk write, written rows are not tracked one by one so the whole cache is dropped
+     * <br>It is cleared before the write and again after its last commit, a row another thread read
+     * meanwhile is either refused by the cache or dropped with it
+     */
+    private BatchInsert.Report execute(BatchInsert<T> insert, List<T> models) {
+        EntityCache cache = getCache();
+        if (cache != null) cache.clear();
         try {
-            getDb().beginTransaction();
-            for (T model : models) {
-                getDb().insertWithOnConflict(getTableName(), null, prepareStatement( new ContentValues()),SQLiteDatabase.CONFLICT_REPLACE);
-            }
-            getDb().setTransactionSuccessful();
+            return insert.execute(models);
         } finally {
-            getDb().endTransaction();
+            if (cache != null) cache.clear();
         }
     }
 
@@ -223,40 +362,156 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * @return boolean true if success
      */
     public boolean delete() {
+        long start = Metrics.start();
         int success = getDb().delete(getTableName(), getIdName() + "=?", new String[]{getIdValue()});
+        if (start != 0)
+            record(Metrics.Type.DELETE, String.format("DELETE FROM %s WHERE %s = ?", getTableName(), getIdName()),
+                    null, success, start);
+        evict(getIdValue());
+        if (success > 0) changed();
         return success > 0;
     }
 
     /**
-     * Count the total of row in the table
+     * Count the rows matching the current clauses, the whole table when there is none
+     * <br>With a group by it is the number of groups
      *
      * @return total of row
      */
     public int count() {
-        int total = 0;
-        Cursor cursor = getDb().rawQuery(String.format("SELECT * FROM %s", getTableName()), null);
-        if (cursor != null) {
-            total = cursor.getCount();
-            cursor.close();
+        return (int) aggregateLong("COUNT", "*");
+    }
+
+    /**
+     * @return true if a row match the current clauses
+     */
+    public boolean exists() {
+        QueryBuilder<T> query = consumeQuery();
+        long start = Metrics.start();
+        String sql = query.toExistsSql();
+        String[] args = query.getAggregateArgs();
+        SQLiteStatement statement = simpleQuery(sql, args);
+        try {
+            boolean exists = statement.simpleQueryForLong() == 1;
+            record(Metrics.Type.COUNT, sql, args, exists ? 1 : 0, start);
+            return exists;
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @param column the summed column
+     * @return the sum over the rows matching the current clauses, <b>0</b> if there is none
+     */
+    public double sum(String column) {
+        return aggregateDouble("SUM", column);
+    }
+
+    /**
+     * @param column the averaged column
+     * @return the average over the rows matching the current clauses, <b>0</b> if there is none
+     */
+    public double avg(String column) {
+        return aggregateDouble("AVG", column);
+    }
+
+    /**
+     * @param column the compared column
+     * @return the smallest value among the rows matching the current clauses or <b>null</b> if there is none
+     */
+    public String min(String column) {
+        return aggregateString("MIN", column);
+    }
+
+    /**
+     * @param column the compared column
+     * @return the greatest value among the rows matching the current clauses or <b>null</b> if there is none
+     */
+    public String max(String column) {
+        return aggregateString("MAX", column);
+    }
+
+    private long aggregateLong(String function, String column) {
+        QueryBuilder<T> query = consumeQuery();
+        long start = Metrics.start();
+        String sql = query.toAggregateSql(function, column);
+        String[] args = query.getAggregateArgs();
+        SQLiteStatement statement = simpleQuery(sql, args);
+        try {
+            long value = statement.simpleQueryForLong();
+            record("COUNT".equals(function) ? Metrics.Type.COUNT : Metrics.Type.AGGREGATE, sql, args, 1, start);
+            return value;
+        } finally {
+            statement.close();
+        }
+    }
+
+    private String aggregateString(String function, String column) {
+        QueryBuilder<T> query = consumeQuery();
+        long start = Metrics.start();
+        String sql = query.toAggregateSql(function, column);
+        String[] args = query.getAggregateArgs();
+        SQLiteStatement statement = simpleQuery(sql, args);
+        try {
+            String value = statement.simpleQueryForString();
+            record(Metrics.Type.AGGREGATE, sql, args, 1, start);
+            return value;
+        } finally {
+            statement.close();
+        }
+    }
+
+    private double aggregateDouble(String function, String column) {
+        String value = aggregateString(function, column);
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+
+    /**
+     * Compile a query returning a single value, no cursor window is allocated
+     */
+    private SQLiteStatement simpleQuery(String sql, String[] args) {
+        SQLiteStatement statement = getDb().compileStatement(sql);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) statement.bindNull(i + 1);
+            else statement.bindString(i + 1, args[i]);
         }
-        return total;
+        return statement;
     }
 
 
     /**
      * Update a model in the table
+     * <br>A model read from the table only writes the columns changed since it was read, and nothing at all
+     * when none changed. Columns left out of a {@link #select(String...)} are never written. A model built
+     * by hand, overriding {@link #sqlQueryBuilder(ContentValues)} or without annotated columns writes every
+     * column through {@link #sqlQueryBuilder(ContentValues)}
      *
      * @return the model up to date from the table on <b>null</b> if something went wrong
      */
     public T update() {
+        TableMetadata metadata = TableMetadata.of(getClass());
+        ContentValues values = snapshot == null ? sqlQueryBuilder(new ContentValues())
+                : metadata.changes(this, snapshot, new ContentValues());
+        if (values.size() == 0) return (T) this;
+        //the row is looked up by the id it was read with in case the id itself changed
+        Object original = snapshot == null ? null : metadata.original(snapshot, getIdName());
+        String id = original == null ? getIdValue() : String.valueOf(original);
         try {
-            int success = getDb().update(getTableName(), sqlQueryBuilder(new ContentValues()), getIdName() + "=?", new String[]{getIdValue()});
+            long start = Metrics.start();
+            int success = getDb().update(getTableName(), values, getIdName() + "=?", new String[]{id});
+            if (start != 0)
+                record(Metrics.Type.UPDATE, String.format("UPDATE %s SET %s = ? WHERE %s = ?", getTableName(),
+                        TextUtils.join(" = ?, ", values.keySet()), getIdName()), null, success, start);
             if (success > 0) {
-                System.out.printf("Update %s : %s\n",getTableName(),String.valueOf(getIdValue()));
-                return find(success);
+                if (snapshot != null) metadata.commit(this, snapshot);
+                evict(id);
+                evict(getIdValue());
+                changed();
+                return find(getIdValue());
             }
         } catch (SQLiteConstraintException e) {
-            System.out.printf("Update Failed ==> %s\n",e.getMessage());
+            Log.w(TAG, String.format("Update of %s failed: %s", getTableName(), e.getMessage()));
         }
         return null;
     }
@@ -268,16 +523,36 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * @return the model found or <b>null</b> if nothing found in table
      */
     public T find(String id) {
-        Cursor cursor = getDb().query(getTableName(), null, getIdName() + " LIKE ?",
+        long start = Metrics.start();
+        EntityCache cache = getCache();
+        long generation = 0;
+        if (cache != null) {
+            Object cached = cache.get(id);
+            if (cached != null) {
+                if (start != 0)
+                    Metrics.record(getDb(), getTableName(), Metrics.Type.FIND, findSql(), null, null, 1, start, true);
+                return copy(cached);
+            }
+            //taken before the read, a write evicting the row meanwhile keeps the row read out of the cache
+            generation = cache.getGeneration();
+        }
+        Cursor cursor = getDb().query(getTableName(), null, getIdName() + " = ?",
                 new String[]{id}, null, null, null);
-        if (cursor != null) {
-            //cloneCursor = cursor;
-            if (cursor.moveToNext()) {
-                return cursorToModel(cursor);
+        ModelIterator<T> result = new ModelIterator<>(this, cursor, false);
+        try {
+            boolean found = result.hasNext();
+            if (start != 0) record(Metrics.Type.FIND, findSql(), new String[]{id}, found ? 1 : 0, start);
+            if (!found) return null;
+            T model = result.next();
+            //a row read inside a transaction may be rolled back
+            if (cache != null && !getDb().inTransaction()) {
+                cache.put(id, model, generation);
+                return copy(model);
             }
-            cursor.close();
+            return model;
+        } finally {
+            result.close();
         }
-        return null;
     }
 
     /**
@@ -311,16 +586,18 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * @deprecated
      */
     public ArrayList<T> findAll() {
-        ArrayList<T> result = new ArrayList<>();
+        return iterateAll(false).toList();
+    }
+
+    /**
+     * Walk every model of the table without loading them all in memory
+     *
+     * @param flyweight true to reuse a single model instance for every row, for read only scans
+     * @return a lazy result that must be closed if not fully read
+     */
+    public ModelIterator<T> iterateAll(boolean flyweight) {
         Cursor cursor = getDb().rawQuery(String.format("SELECT * FROM %s ORDER BY %s", getTableName(), getOrderBy()), null);
-        if (cursor != null) {
-            //cloneCursor = cursor;
-            while (cursor.moveToNext()) {
-                result.add(cursorToModel(cursor));
-            }
-            cursor.close();
-        }
-        return result;
+        return new ModelIterator<>(this, cursor, flyweight);
     }
 
     /**
@@ -332,23 +609,81 @@ public abstract class Model<T> implements Cloneable, Serializable {
         return findAll();
     }
 
+    /**
+     * Search the table, see {@link #search(String, int)}
+     *
+     * @param query the text typed by the user
+     * @return every matching model or an<b>empty list</b>
+     */
     public ArrayList<T> search(String query) {
-        ArrayList<T> result = new ArrayList<>();
-        Cursor cursor = getDb().query(getTableName(), null, getSearchable() + " LIKE ?",
-                new String[]{"%" + query + "%"}, null, null, getOrderBy());
-        //Cursor cursor = getDb().rawQuery(String.format("SELECT * FROM %s WHERE ? LIKE ? ORDER BY ? LIMIT ?,?", getTableName()),
-        //new String[]{getSearchable(), "%" + query + "%", getOrderBy(), String.valueOf(lastSearchPage), String.valueOf(getLimit())});
-        if (cursor != null) {
-            //cloneCursor = cursor;
-            //Log.e("size", cursor.getCount() + "");
-            while (cursor.moveToNext()) {
-                result.add(cursorToModel(cursor));
-            }
-            cursor.close();
+        return search(query, 0);
+    }
+
+    /**
+     * Search the table
+     * <br>When the table has a full text shadow table (see {@link Schema#fullText(String...)}) each word is
+     * matched as a prefix and the best matches come first, otherwise {@link #getSearchable()} is scanned with
+     * <b>LIKE</b> in {@link #getOrderBy()} order
+     *
+     * @param query the text typed by the user
+     * @param limit maximum number of models, <b>0</b> for all of them
+     * @return the matching models or an<b>empty list</b>
+     */
+    public ArrayList<T> search(String query, int limit) {
+        long start = Metrics.start();
+        if (!FullText.exists(getDatabase(), getTableName())) {
+            String sql = String.format("SELECT * FROM %s WHERE %s LIKE ? ORDER BY %s%s", getTableName(),
+                    getSearchable(), getOrderBy(), limit > 0 ? " LIMIT " + limit : "");
+            String[] args = {"%" + query + "%"};
+            ArrayList<T> result = new ModelIterator<>(this, getDb().rawQuery(sql, args), false).toList();
+            record(Metrics.Type.SEARCH, sql, args, result.size(), start);
+            return result;
+        }
+
+        List<Long> rowIds = FullText.rank(getDb(), getTableName(), query, limit);
+        if (rowIds.isEmpty()) {
+            if (start != 0) record(Metrics.Type.SEARCH, fullTextSql(), null, 0, start);
+            return new ArrayList<>();
+        }
+        //rowids are integers read from the database so they are inlined, it keeps clear of the bound parameters limit
+        String ids = TextUtils.join(",", rowIds);
+        StringBuilder order = new StringBuilder("CASE rowid");
+        for (int i = 0; i < rowIds.size(); i++) {
+            order.append(" WHEN ").append(rowIds.get(i)).append(" THEN ").append(i);
         }
+        order.append(" END");
+        Cursor cursor = getDb().rawQuery(String.format("SELECT * FROM %s WHERE rowid IN (%s) ORDER BY %s",
+                getTableName(), ids, order), null);
+        ArrayList<T> result = new ModelIterator<>(this, cursor, false).toList();
+        //the inlined rowids change every time, the match is what the plan is about
+        if (start != 0) record(Metrics.Type.SEARCH, fullTextSql(), null, result.size(), start);
         return result;
     }
 
+    private String findSql() {
+        return String.format("SELECT * FROM %s WHERE %s = ?", getTableName(), getIdName());
+    }
+
+    private String fullTextSql() {
+        String fts = FullText.tableOf(getTableName());
+        return String.format("SELECT * FROM %s WHERE rowid IN (SELECT docid FROM %s WHERE %s MATCH ?)",
+                getTableName(), fts, fts);
+    }
+
+    /**
+     * Report an operation of this model to {@link Metrics}, the SQL is its shape and is explained when slow
+     */
+    private void record(Metrics.Type type, String sql, String[] args, int rows, long start) {
+        if (start != 0) Metrics.record(getDb(), getTableName(), type, sql, sql, args, rows, start, false);
+    }
+
+    /**
+     * Report a write made through {@link BatchInsert}, the values of its rows are not kept so it is not explained
+     */
+    private void record(Metrics.Type type, BatchInsert<T> insert, int rows, long start) {
+        if (start != 0) Metrics.record(getDb(), getTableName(), type, insert.toSql(), null, null, rows, start, false);
+    }
+
     /**
      * Method for find information by lastID and get result list
      *
@@ -357,18 +692,7 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * <br>the list is paginate <b>default value is 5 per result</b>
      */
     public ArrayList<T> findByRange(String lastID) {
-        ArrayList<T> result = new ArrayList<>();
-        System.out.print(lastID);
-        Cursor cursor = getDb().rawQuery(String.format("SELECT * FROM %s WHERE %s > ? ORDER BY %s LIMIT %s", getTableName(), getIdName(), getOrderBy(), getLimit()),
-                new String[]{lastID});
-        if (cursor != null) {
-            //cloneCursor = cursor;
-            while (cursor.moveToNext()) {
-                result.add(cursorToModel(cursor));
-            }
-            cursor.close();
-        }
-        return result;
+        return new KeysetPaginator<>(this, null).afterRow(lastID).next();
     }
 
     /**
@@ -378,22 +702,29 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * <br>the list is paginate <b>default value is 5 per result</b>
      */
     public ArrayList<T> paginate() {
-        ArrayList<T> result = new ArrayList<>();
-
-        Cursor cursor = getDb().rawQuery(String.format("SELECT * FROM %s ORDER BY %s LIMIT %s,%s", getTableName(), getOrderBy(), lastPage, getLimit()), null);
-        if (cursor != null) {
-            //cloneCursor = cursor;
-            while (cursor.moveToNext()) {
-                result.add(cursorToModel(cursor));
-            }
-            cursor.close();
-        }
+        //a page set with setLastPage() is reached once by offset, the following ones are seeked
+        if (pager == null || pager.getPosition() != lastPage)
+            pager = new KeysetPaginator<>(this, null).skip(lastPage);
+        ArrayList<T> result = pager.next();
 
-        lastPage += result.size();
+        lastPage = pager.getPosition();
 
         return result;
     }
 
+    /**
+     * Page through the models matching the current clauses by seeking the order by key of the last row
+     * <br>the clauses are consumed by the paginator
+     *
+     * @return a paginator sorted by the order by of the clauses or {@link #getOrderBy()}, with their limit or
+     * {@link #getLimit()} rows per page
+     */
+    public KeysetPaginator<T> keyset() {
+        KeysetPaginator<T> paginator = new KeysetPaginator<>(this, query);
+        query = null;
+        return paginator;
+    }
+
     /**
      * Method for find information by lastID and get result list
      *
@@ -402,18 +733,7 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * <br>the list is paginate <b>default value is 5 per result</b>
      */
     public ArrayList<T> findByRange(int lastID) {
-        ArrayList<T> result = new ArrayList<>();
-        System.out.print(lastID);
-        Cursor cursor = getDb().rawQuery(String.format("SELECT * FROM %s WHERE %s > ? ORDER BY %s LIMIT %s", getTableName(), getIdName(), getOrderBy(), getLimit()),
-                new String[]{String.valueOf(lastID)});
-        if (cursor != null) {
-            // cloneCursor = cursor;
-            while (cursor.moveToNext()) {
-                result.add(cursorToModel(cursor));
-            }
-            cursor.close();
-        }
-        return result;
+        return findByRange(String.valueOf(lastID));
     }
 
     /**
@@ -424,18 +744,7 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * <br>the list is paginate <b>default value is 5 per result</b>
      */
     public ArrayList<T> findByRangeInvert(int lastID) {
-        ArrayList<T> result = new ArrayList<>();
-        System.out.print(lastID);
-        Cursor cursor = getDb().rawQuery(String.format("SELECT * FROM %s WHERE %s < ? ORDER BY %s LIMIT %s", getTableName(), getIdName(), getOrderBy(), getLimit()),
-                new String[]{String.valueOf(lastID)});
-        if (cursor != null) {
-            //cloneCursor = cursor;
-            while (cursor.moveToNext()) {
-                result.add(cursorToModel(cursor));
-            }
-            cursor.close();
-        }
-        return result;
+        return new KeysetPaginator<>(this, null).beforeRow(String.valueOf(lastID)).previous();
     }
 
     public String toFCUpperCase(String e) {
@@ -486,19 +795,23 @@ public abstract class Model<T> implements Cloneable, Serializable {
         } catch (CloneNotSupportedException e) {
             e.printStackTrace();
         }
-        for (String column :
-                cursor.getColumnNames()) {
-            try {
-                assert object != null;
-                fillAttribute(object, column, cursor);
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
-            }
-        }
-
+        assert object != null;
+        fillRow(object, cursor);
         return object;
     }
 
+    /**
+     * Fill a model with the current row and remember the values read for {@link #update()}
+     *
+     * @param model  the model to fill, of the same class as this one
+     * @param cursor cursor positioned on a row
+     */
+    void fillRow(Object model, Cursor cursor) {
+        TableMetadata metadata = TableMetadata.of(getClass());
+        metadata.fill(model, cursor);
+        ((Model<?>) model).snapshot = metadata.isTracked() ? metadata.snapshot(model, cursor) : null;
+    }
+
     /**
      * @return
      */
@@ -510,7 +823,7 @@ public abstract class Model<T> implements Cloneable, Serializable {
 
 
     /**
-     * @return SQlIte query to build table from annotation
+     * @return SQlIte script to build table and its indexes from annotation, run it with {@link Schema#create(SQLiteDatabase)}
      */
     public String genTable() throws TableException {
         return getSchema().toString();
@@ -547,7 +860,13 @@ public abstract class Model<T> implements Cloneable, Serializable {
 
     @Override
     public Object clone() throws CloneNotSupportedException {
-        return super.clone();
+        Model<T> clone = (Model<T>) super.clone();
+        //rows must not share the pending where chain of their template
+        clone.query = null;
+        clone.pager = null;
+        clone.eager = null;
+        clone.snapshot = snapshot == null ? null : snapshot.clone();
+        return clone;
     }
 
     /**
@@ -557,21 +876,10 @@ public abstract class Model<T> implements Cloneable, Serializable {
      */
     public String toJson() {
         List<String> json = new ArrayList<>();
-        try {
-            Class c = Class.forName(this.getClass().getName());
-            for (Field field : c.getDeclaredFields()) {
-                field.setAccessible(true);
-                try {
-                    json.add(String.format("\n\t\"%s\" : \"%s\"", field.getName(), field.get(this)));
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                }
-            }
-            return String.format("{%s}", TextUtils.join(",", json.toArray()));
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+        for (TableMetadata.Attribute attribute : TableMetadata.of(getClass()).getAttributes()) {
+            json.add(String.format("\n\t\"%s\" : \"%s\"", attribute.getName(), attribute.get(this)));
         }
-        return "{}";
+        return String.format("{%s}", TextUtils.join(",", json.toArray()));
     }
 
     /**
@@ -579,27 +887,7 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * @return an object with model data extracted
      */
     public ContentValues prepareStatement(ContentValues values) {
-        try {
-            Class c = Class.forName(this.getClass().getName());
-
-
-            for (Field field : c.getDeclaredFields()) {
-                if (!field.isAccessible()) field.setAccessible(true);
-                try {
-                    if (field.getName().equals("serialVersionUID")) continue;
-                    //For annotated classes
-                    if(c.isAnnotationPresent(Table.class) && field.isAnnotationPresent(corp.ny.com.rufus.database.annotation.Column.class)){
-                        populate(field,values);
-                    }
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                }
-            }
-
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
-        return values;
+        return TableMetadata.of(getClass()).populate(this, values);
     }
 
     /**
@@ -609,109 +897,349 @@ public abstract class Model<T> implements Cloneable, Serializable {
      * @throws IllegalAccessException
      */
     public void populate(Field field,ContentValues values) throws IllegalAccessException {
-        if (field.getType() == String.class)
-            values.put(field.getName(), (String) field.get(this));
-        else if (field.getType() == boolean.class)
-            values.put(field.getName(), (Boolean) field.get(this));
-        else if (field.getType() == byte.class)
-            values.put(field.getName(), (Byte) field.get(this));
-        else if (!field.getAnnotation(Column.class).increment() || !field.get(this).equals(Defaults.defaultValue(field.getType()))) {
-            if (field.getType() == int.class)
-                values.put(field.getName(), (Integer) field.get(this));
-            else if (field.getType() == double.class)
-                values.put(field.getName(), (Double) field.get(this));
-            else if (field.getType() == float.class)
-                values.put(field.getName(), (Float) field.get(this));
-            else if (field.getType() == short.class)
-                values.put(field.getName(), (Short) field.get(this));
-            else if (field.getType() == long.class)
-                values.put(field.getName(), (Long) field.get(this));
+        TableMetadata.Attribute attribute = TableMetadata.of(getClass()).getAttribute(field.getName());
+        if (attribute != null)
+            attribute.put(this, values);
+    }
+
+    /**
+     * Run the operations of this model on background threads
+     *
+     * @return the asynchronous view of this model
+     */
+    public AsyncModel<T> async() {
+        return new AsyncModel<>(this);
+    }
+
+    /**
+     * Move the pending where chain to a copy of this model so it can run on another thread
+     *
+     * @return a copy owning the where chain
+     */
+    Model<T> detach() {
+        try {
+            Model<T> copy = (Model<T>) clone();
+            copy.query = query;
+            copy.eager = eager;
+            query = null;
+            eager = null;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
         }
     }
 
+    /**
+     * Take the pending where chain, the next query of this model start from scratch
+     */
+    private QueryBuilder<T> consumeQuery() {
+        QueryBuilder<T> query = query();
+        this.query = null;
+        return query;
+    }
+
+    /**
+     * @return the pending where chain of this model
+     */
+    public QueryBuilder<T> query() {
+        if (query == null)
+            query = new QueryBuilder<>(getTableName());
+        return query;
+    }
+
+    /**
+     * Only fetch some columns, the other fields of the returned models keep their default value
+     * <p> <b>example</b><br>
+     * <blockquote>
+     * <pre>
+     * new Message().select("id", "senderId").where("receiverId", 1).get();
+     * </pre></blockquote>
+     *
+     * @param columns the fetched columns
+     * @return this model
+     */
+    public Model<T> select(String... columns) {
+        query().select(columns);
+        return this;
+    }
+
     public Model<T> where(String column, String value) {
-        clauses.add(new Clause(column, value));
+        query().where(column, value);
         return this;
     }
 
     public Model<T> where(String column, int value) {
-        clauses.add(new Clause(column, String.valueOf(value)));
+        query().where(column, value);
         return this;
     }
 
     public Model<T> where(String column, boolean value) {
-        clauses.add(new Clause(column, String.valueOf(value ? 1 : 0)));
+        query().where(column, value);
         return this;
     }
 
     public Model<T> where(String column, Clause.Comparison comparison, String value) {
-        clauses.add(new Clause(column, comparison.value, value));
+        query().where(column, comparison, value);
         return this;
     }
 
     public Model<T> where(String column, Clause.Comparison comparison, boolean value) {
-        clauses.add(new Clause(column, comparison.value, String.valueOf(value ? 1 : 0)));
+        query().where(column, comparison, value);
         return this;
     }
 
     public Model<T> where(String column, Clause.Comparison comparison, int value) {
-        clauses.add(new Clause(column, comparison.value, String.valueOf(value)));
+        query().where(column, comparison, value);
         return this;
     }
 
     public Model<T> where(String column, String comparison, String value) {
-        clauses.add(new Clause(column, comparison, value));
+        query().where(column, comparison, value);
+        return this;
+    }
+
+    public Model<T> whereIn(String column, Object... values) {
+        query().whereIn(column, values);
+        return this;
+    }
+
+    public Model<T> whereNotIn(String column, Object... values) {
+        query().whereNotIn(column, values);
+        return this;
+    }
+
+    public Model<T> whereBetween(String column, Object from, Object to) {
+        query().whereBetween(column, from, to);
+        return this;
+    }
+
+    public Model<T> whereNull(String column) {
+        query().whereNull(column);
+        return this;
+    }
+
+    public Model<T> whereNotNull(String column) {
+        query().whereNotNull(column);
         return this;
     }
 
     public void setGroupBy(String groupBy) {
-        this.groupBy = groupBy;
+        query().groupBy(groupBy);
     }
 
     public void setOrderBy(String orderBy) {
-        this.orderBy = orderBy;
+        query().orderBy(orderBy);
     }
 
+    /**
+     * Walk the models matching the current clauses without loading them all in memory
+     *
+     * @return a lazy result that must be closed if not fully read
+     */
+    public ModelIterator<T> iterate() {
+        return iterate(false);
+    }
+
+    /**
+     * Walk the models matching the current clauses without loading them all in memory
+     *
+     * @param flyweight true to reuse a single model instance for every row, for read only scans
+     * @return a lazy result that must be closed if not fully read
+     */
+    public ModelIterator<T> iterate(boolean flyweight) {
+        QueryBuilder<T> query = consumeOrderedQuery();
+        Cursor cursor = getDb().rawQuery(query.toSql(), query.getArgs());
+        return new ModelIterator<>(this, cursor, flyweight);
+    }
+
+    private QueryBuilder<T> consumeOrderedQuery() {
+        QueryBuilder<T> query = consumeQuery();
+        if (query.getOrderBy() == null) query.orderBy(getOrderBy());
+        return query;
+    }
+
+    /**
+     * Run the current clauses, they are cleared afterward so this model can start a new query
+     *
+     * @return every matching model in {@link #getOrderBy()} order or an<b>empty list</b>
+     */
     public ArrayList<T> get() {
-        ArrayList<T> result = new ArrayList<>();
-        String sql = TextUtils.join(" AND ", clauses.toArray());
-        Cursor cursor = getDb().query(getTableName(), null, sql,
-                null, this.groupBy, null, this.orderBy);
-        if (cursor != null) {
-            //cloneCursor = cursor;
-            if (cursor.moveToNext()) {
-                result.add(cursorToModel(cursor));
+        String[] relations = eager;
+        eager = null;
+        long start = Metrics.start();
+        QueryBuilder<T> query = consumeOrderedQuery();
+        String sql = query.toSql();
+        String[] args = query.getArgs();
+        ArrayList<T> result = new ModelIterator<>(this, getDb().rawQuery(sql, args), false).toList();
+        record(Metrics.Type.SELECT, sql, args, result.size(), start);
+        if (relations != null) load(result, relations);
+        return result;
+    }
+
+    /**
+     * Keep the result of the current where chain up to date, see {@link ObservableQuery}
+     *
+     * @param callback receive the first result then a new one after each write on the table
+     * @return the subscription to close
+     */
+    public ObservableQuery<T> observe(AsyncModel.Callback<ArrayList<T>> callback) {
+        return observe(ObservableQuery.DEFAULT_DEBOUNCE_MILLIS, callback);
+    }
+
+    /**
+     * Keep the result of the current where chain up to date, the tables of the relations given to
+     * {@link #with(String...)} are observed too
+     *
+     * @param debounceMillis delay during which writes are coalesced into a single run
+     * @param callback       receive the first result then a new one after each write on the observed tables
+     * @return the subscription to close
+     */
+    public ObservableQuery<T> observe(long debounceMillis, AsyncModel.Callback<ArrayList<T>> callback) {
+        Model<T> copy = detach();
+        List<String> tables = new ArrayList<>();
+        tables.add(getDatabase().qualify(getTableName()));
+        if (copy.eager != null)
+            for (String relation : copy.eager) {
+                tables.add(Relation.of(getClass(), relation).getRelatedTable(database));
+            }
+        return new ObservableQuery<>(copy, copy.query(), copy.eager,
+                InvalidationTracker.normalize(tables.toArray(new String[tables.size()])), debounceMillis, callback).start();
+    }
+
+    /**
+     * Run again a where chain kept by an {@link ObservableQuery}
+     */
+    ArrayList<T> rerun(QueryBuilder<T> query, String[] relations) {
+        this.query = query;
+        this.eager = relations;
+        return get();
+    }
+
+    /**
+     * Load relations with the next {@link #get()}, {@link #first()} or {@link #last()}
+     * <br>Each relation cost one query for the whole result instead of one per model
+     *
+     * @param relations names of the fields annotated with {@link corp.ny.com.rufus.database.annotation.BelongsTo}
+     *                  or {@link corp.ny.com.rufus.database.annotation.HasMany}
+     * @return this model
+     */
+    public Model<T> with(String... relations) {
+        eager = relations;
+        return this;
+    }
+
+    /**
+     * Load relations of models already read, for instance a page returned by {@link #paginate()}
+     *
+     * @param models    the models
+     * @param relations names of the relation fields
+     * @return models
+     */
+    public ArrayList<T> load(ArrayList<T> models, String... relations) {
+        if (models.isEmpty()) return models;
+        for (String relation : relations) {
+            Relation.of(getClass(), relation).load(models, database);
+        }
+        return models;
+    }
+
+    /**
+     * Map the rows matching the current clauses to a lighter class, its fields are filled by column name
+     * <br>When no column was selected only the fields of the class are fetched
+     * <p> <b>example</b><br>
+     * <blockquote>
+     * <pre>
+     * public class MessagePreview {
+     *     private int id;
+     *     private String message;
+     * }
+     * ArrayList&lt;MessagePreview&gt; previews = new Message().select("id", "substr(message, 1, 40) AS message")
+     *         .get(MessagePreview.class);
+     * </pre></blockquote>
+     *
+     * @param type a class with a no argument constructor
+     * @param <D>  the projection type
+     * @return a list of projection or an<b>empty list</b>
+     */
+    public <D> ArrayList<D> get(Class<D> type) {
+        QueryBuilder<T> query = consumeQuery();
+        TableMetadata metadata = TableMetadata.of(type);
+        if (query.getColumns().length == 0) {
+            List<TableMetadata.Attribute> attributes = metadata.getAttributes();
+            String[] columns = new String[attributes.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = attributes.get(i).getName();
             }
+            query.select(columns);
+        }
+        ArrayList<D> result = new ArrayList<>();
+        Cursor cursor = getDb().rawQuery(query.toSql(), query.getArgs());
+        if (cursor == null) return result;
+        try {
+            while (cursor.moveToNext()) {
+                D row = type.newInstance();
+                metadata.fill(row, cursor);
+                result.add(row);
+            }
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException(String.format("%s needs a public no argument constructor", type.getName()), e);
+        } finally {
             cursor.close();
         }
         return result;
     }
 
+    /**
+     * @return the first matching model, only one row is read, or <b>null</b>
+     */
     public T first() {
+        query().limit(1);
         ArrayList<T> result = get();
-        if (result.isEmpty())
-            return null;
-        else
-            return result.get(0);
+        return result.isEmpty() ? null : result.get(0);
     }
 
     /**
-     * Get
-     * @return
+     * Get the last matching model by reading the first row of the reversed order
+     *
+     * @return the last matching model or <b>null</b>
+     * @throws IllegalStateException if the chain has an offset or a limit, the end of the order is not the end of
+     *                               their window
      */
     public T last() {
+        QueryBuilder<T> query = query();
+        if (query.getOffset() > 0 || query.getLimit() >= 0) {
+            consumeQuery();
+            throw new IllegalStateException("last() reads the end of the order, it cannot be combined with an offset or a limit");
+        }
+        query.orderBy(QueryBuilder.reverse(query.getOrderBy() == null ? getOrderBy() : query.getOrderBy(), getIdName()))
+                .limit(1);
         ArrayList<T> result = get();
-        if (result.isEmpty())
-            return null;
-        else
-            return result.get(result.size() - 1);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * @param limit maximum number of models returned by the query, negative for no limit
+     * @return this model
+     */
+    public Model<T> limit(int limit) {
+        query().limit(limit);
+        return this;
+    }
+
+    /**
+     * @param offset number of models skipped by the query
+     * @return this model
+     */
+    public Model<T> offset(int offset) {
+        query().offset(offset);
+        return this;
     }
 
     public void groupBy(String groupBy) {
-        this.groupBy = groupBy;
+        query().groupBy(groupBy);
     }
 
     public void orderBy(String orderBy) {
-        this.orderBy = orderBy;
+        query().orderBy(orderBy);
     }
 }
@@ -0,0 +1,107 @@
+package corp.ny.com.rufus.database;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy query result, each row is mapped when the cursor reach it instead of building the whole list
+ * <br>The cursor is closed once the last row is read, call {@link #close()} when leaving the loop early
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * ModelIterator&lt;Message&gt; messages = new Message().where("receiverId", 1).iterate();
+ * try {
+ *     for (Message message : messages) { ... }
+ * } finally {
+ *     messages.close();
+ * }
+ * </pre></blockquote>
+ *
+ * @param <T> the model type
+ */
+public class ModelIterator<T> implements Iterator<T>, Iterable<T>, Closeable {
+    private final Model<T> template;
+    private final Cursor cursor;
+    private final boolean flyweight;
+    private T shared;
+    private boolean advanced = false;
+    private boolean hasRow = false;
+    private boolean closed = false;
+
+    /**
+     * @param template  the model cloned for each row
+     * @param cursor    the query result, may be null
+     * @param flyweight true to fill a single instance for every row, it must not be kept after the next row
+     */
+    public ModelIterator(Model<T> template, Cursor cursor, boolean flyweight) {
+        this.template = template;
+        this.cursor = cursor;
+        this.flyweight = flyweight;
+        if (cursor == null) closed = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) return false;
+        if (!advanced) {
+            hasRow = cursor.moveToNext();
+            advanced = true;
+            if (!hasRow) close();
+        }
+        return hasRow;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        advanced = false;
+        if (!flyweight)
+            return template.cursorToModel(cursor);
+        if (shared == null)
+            shared = template.cursorToModel(cursor);
+        else
+            template.fillRow(shared, cursor);
+        return shared;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Query results are read only");
+    }
+
+    /**
+     * The iterator can be walked only once
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    /**
+     * Read every remaining row then close the cursor
+     *
+     * @return the models
+     */
+    public ArrayList<T> toList() {
+        ArrayList<T> result = new ArrayList<>();
+        try {
+            while (hasNext()) {
+                result.add(next());
+            }
+        } finally {
+            close();
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        cursor.close();
+    }
+}
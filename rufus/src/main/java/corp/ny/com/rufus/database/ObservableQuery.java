@@ -0,0 +1,124 @@
+package corp.ny.com.rufus.database;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import corp.ny.com.rufus.system.RufusExecutors;
+
+/**
+ * A where chain run again each time one of its tables is written
+ * <br>Notifications received during the debounce delay are coalesced into a single run, the query runs on
+ * {@link RufusExecutors#reader()} and the result is delivered on the main thread. Call {@link #close()} when
+ * the result is no longer displayed
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * ObservableQuery&lt;Message&gt; inbox = new Message().where("receiverId", 1).observe(new AsyncModel.Callback&lt;ArrayList&lt;Message&gt;&gt;() {
+ *     public void onSuccess(ArrayList&lt;Message&gt; messages) { adapter.swap(messages); }
+ *     public void onError(Throwable error) { ... }
+ * });
+ * ...
+ * inbox.close();
+ * </pre></blockquote>
+ *
+ * @param <T> the model type
+ */
+public class ObservableQuery<T> implements InvalidationTracker.Observer {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+
+    private final Model<T> model;
+    private final QueryBuilder<T> query;
+    private final String[] relations;
+    private final Set<String> tables;
+    private final long debounceMillis;
+    private final AsyncModel.Callback<ArrayList<T>> callback;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed = false;
+
+    ObservableQuery(Model<T> model, QueryBuilder<T> query, String[] relations, Set<String> tables,
+                    long debounceMillis, AsyncModel.Callback<ArrayList<T>> callback) {
+        this.model = model;
+        this.query = query;
+        this.relations = relations;
+        this.tables = tables;
+        this.debounceMillis = debounceMillis;
+        this.callback = callback;
+    }
+
+    /**
+     * Subscribe and run the query a first time
+     */
+    ObservableQuery<T> start() {
+        InvalidationTracker.addObserver(this);
+        run();
+        return this;
+    }
+
+    @Override
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    @Override
+    public void onInvalidated(Set<String> tables) {
+        if (closed || !scheduled.compareAndSet(false, true)) return;
+        RufusExecutors.scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                scheduled.set(false);
+                ObservableQuery.this.run();
+            }
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run the query now whatever the tables
+     */
+    public void refresh() {
+        run();
+    }
+
+    private void run() {
+        if (closed) return;
+        RufusExecutors.reader().submit(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) return;
+                try {
+                    final ArrayList<T> result;
+                    //the model copy hold the chain during the run, runs of the same query never overlap
+                    synchronized (model) {
+                        result = model.rerun(query, relations);
+                    }
+                    RufusExecutors.postToMain(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!closed) callback.onSuccess(result);
+                        }
+                    });
+                } catch (final Exception e) {
+                    RufusExecutors.postToMain(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!closed) callback.onError(e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stop observing, a run in progress is not delivered
+     */
+    public void close() {
+        closed = true;
+        InvalidationTracker.removeObserver(this);
+    }
+}
@@ -1,21 +1,300 @@
 package corp.ny.com.rufus.database;
 
-import android.database.Cursor;
-
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Created by Yann Yvan CEO of N.Y. Corp. on 07/05/18.
+ * <p>
+ * Build a parameterized SELECT, every value is sent as a bind argument so queries that only differ
+ * by their values share the same sql and hit SQLite prepared statement cache
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * QueryBuilder&lt;Message&gt; query = new QueryBuilder&lt;&gt;("Message")
+ *         .where("receiverId", 1)
+ *         .whereIn("senderId", 2, 3)
+ *         .orderBy("id DESC")
+ *         .limit(20);
+ * db.rawQuery(query.toSql(), query.getArgs());
+ * </pre></blockquote>
+ *
+ * @param <Y> the model type
  */
 public class QueryBuilder<Y> {
+    private final String table;
+    private final List<Clause> clauses = new ArrayList<>();
+    private String[] columns = new String[0];
+    private String groupBy;
+    private String orderBy;
+    private int limit = -1;
+    private int offset = -1;
+
+    public QueryBuilder(String table) {
+        this.table = table;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Only fetch some columns, the other fields of the models keep their default value
+     *
+     * @param columns column names or expressions like <b>COUNT(*) AS total</b>, none for every column
+     */
+    public QueryBuilder<Y> select(String... columns) {
+        this.columns = columns;
+        return this;
+    }
+
+    public QueryBuilder<Y> where(Clause clause) {
+        clauses.add(clause);
+        return this;
+    }
+
+    public QueryBuilder<Y> where(String column, Object value) {
+        return where(new Clause(column, toArg(value)));
+    }
+
+    public QueryBuilder<Y> where(String column, Clause.Comparison comparison, Object value) {
+        return where(new Clause(column, comparison.value, toArg(value)));
+    }
+
+    public QueryBuilder<Y> where(String column, String comparison, String value) {
+        return where(new Clause(column, comparison, value));
+    }
+
+    public QueryBuilder<Y> whereIn(String column, Object... values) {
+        return where(new Clause(column, Clause.Comparison.in, toArgs(values)));
+    }
+
+    public QueryBuilder<Y> whereNotIn(String column, Object... values) {
+        return where(new Clause(column, Clause.Comparison.not_in, toArgs(values)));
+    }
+
+    public QueryBuilder<Y> whereBetween(String column, Object from, Object to) {
+        return where(new Clause(column, Clause.Comparison.between, toArg(from), toArg(to)));
+    }
+
+    public QueryBuilder<Y> whereNull(String column) {
+        return where(new Clause(column, Clause.Comparison.is.value, null));
+    }
+
+    public QueryBuilder<Y> whereNotNull(String column) {
+        return where(new Clause(column, Clause.Comparison.is_not.value, null));
+    }
+
+    public QueryBuilder<Y> groupBy(String groupBy) {
+        this.groupBy = groupBy;
+        return this;
+    }
+
+    public QueryBuilder<Y> orderBy(String orderBy) {
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    /**
+     * @param limit maximum number of rows, negative for no limit
+     */
+    public QueryBuilder<Y> limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @param offset number of rows to skip, negative for none
+     */
+    public QueryBuilder<Y> offset(int offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
 
+    public List<Clause> getClauses() {
+        return clauses;
+    }
+
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return true if no clause has been added
+     */
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    /**
+     * @return the WHERE condition without the keyword or <b>null</b> if there is no clause
+     */
+    public String getSelection() {
+        return getSelection(new ArrayList<String>());
+    }
+
+    /**
+     * @return the bind arguments of {@link #getSelection()}
+     */
+    public String[] getSelectionArgs() {
+        List<String> args = new ArrayList<>();
+        getSelection(args);
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * @return the full SELECT statement
+     */
+    public String toSql() {
+        return toSql(new ArrayList<String>());
+    }
+
+    /**
+     * @return the bind arguments of {@link #toSql()}
+     */
+    public String[] getArgs() {
+        List<String> args = new ArrayList<>();
+        toSql(args);
+        return args.toArray(new String[args.size()]);
+    }
+
+    private String getSelection(List<String> args) {
+        if (clauses.isEmpty()) return null;
+        StringBuilder selection = new StringBuilder();
+        for (Clause clause : clauses) {
+            if (selection.length() > 0) selection.append(" AND ");
+            selection.append(clause.toSql(args));
+        }
+        return selection.toString();
+    }
+
+    /**
+     * Build a query returning a single value computed over the matching rows
+     * <br>With a group by the function is first computed per group then combined over the groups, so
+     * <b>COUNT</b> is the number of groups and <b>SUM</b> the sum of the group sums. <b>AVG</b> stays the average
+     * of the rows of every group, not the average of the group averages. A limit or an offset restrict the
+     * rows (or groups) taken into account
+     *
+     * @param function an aggregate function like <b>COUNT</b>, <b>SUM</b>, <b>AVG</b>, <b>MIN</b> or <b>MAX</b>
+     * @param column   the aggregated column, <b>*</b> for COUNT
+     * @return the SELECT statement, its arguments are given by {@link #getAggregateArgs()}
+     */
+    public String toAggregateSql(String function, String column) {
+        return toAggregateSql(function, column, new ArrayList<String>());
+    }
+
+    /**
+     * @return the bind arguments of {@link #toAggregateSql(String, String)}
+     */
+    public String[] getAggregateArgs() {
+        List<String> args = new ArrayList<>();
+        toAggregateSql("COUNT", "*", args);
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * @return a query returning 1 if a row match the clauses, its arguments are given by {@link #getAggregateArgs()}
+     */
+    public String toExistsSql() {
+        return String.format("SELECT EXISTS(%s)", select("1", limit >= 0 || offset >= 0, new ArrayList<String>()));
+    }
+
+    private String toAggregateSql(String function, String column, List<String> args) {
+        String target = column.equals("*") ? column : Clause.quote(column);
+        boolean limited = limit >= 0 || offset >= 0;
+        if (groupBy == null && !limited)
+            return select(String.format("%s(%s)", function, target), false, args).toString();
+        String inner;
+        String outer;
+        if (groupBy == null) {
+            inner = String.format("%s AS value", column.equals("*") ? "1" : target);
+            outer = String.format("%s(value)", function);
+        } else if (function.equalsIgnoreCase("AVG")) {
+            //groups of different sizes would weigh the same, no row or only nulls divide by zero and give NULL
+            inner = String.format("SUM(%s) AS value, COUNT(%s) AS number", target, target);
+            outer = "TOTAL(value) / SUM(number)";
+        } else {
+            inner = String.format("%s(%s) AS value", function, target);
+            outer = function.equalsIgnoreCase("COUNT") ? "COUNT(*)" : String.format("%s(value)", function);
+        }
+        //the order only matters when it decides which rows the limit keeps
+        return String.format("SELECT %s FROM (%s)", outer, select(inner, limited, args));
+    }
+
+    private String toSql(List<String> args) {
+        if (columns.length == 0)
+            return select("*", true, args).toString();
+        StringBuilder projection = new StringBuilder();
+        for (String column : columns) {
+            if (projection.length() > 0) projection.append(", ");
+            projection.append(Clause.quote(column));
+        }
+        return select(projection.toString(), true, args).toString();
+    }
+
+    private StringBuilder select(String columns, boolean ordered, List<String> args) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(" FROM ").append(table);
+        String selection = getSelection(args);
+        if (selection != null) sql.append(" WHERE ").append(selection);
+        if (groupBy != null) sql.append(" GROUP BY ").append(groupBy);
+        if (orderBy != null && ordered) sql.append(" ORDER BY ").append(orderBy);
+        if (limit >= 0 || offset >= 0) {
+            sql.append(" LIMIT ?");
+            args.add(String.valueOf(limit));
+        }
+        if (offset >= 0) {
+            sql.append(" OFFSET ?");
+            args.add(String.valueOf(offset));
+        }
+        return sql;
+    }
+
+    /**
+     * Reverse the direction of every sort key, the primary key is appended when missing so the order is total
+     *
+     * @param orderBy sort keys like <b>createdAt DESC, id</b>
+     * @param idName  the primary key
+     * @return the reversed order like <b>createdAt ASC, id DESC</b>
+     */
+    static String reverse(String orderBy, String idName) {
+        StringBuilder reversed = new StringBuilder();
+        for (KeysetPaginator.SortKey key : KeysetPaginator.SortKey.parse(orderBy, idName)) {
+            if (reversed.length() > 0) reversed.append(", ");
+            reversed.append(Clause.quote(key.column)).append(key.descending ? " ASC" : " DESC");
+        }
+        return reversed.toString();
+    }
 
-    public boolean delete() {
-        return false;
+    /**
+     * Convert a value to its bind argument, booleans are stored as 0 or 1
+     */
+    static String toArg(Object value) {
+        if (value == null) return null;
+        if (value instanceof Boolean) return ((Boolean) value) ? "1" : "0";
+        return String.valueOf(value);
     }
 
-    public Model<Y> update() {
-        return null;
+    static String[] toArgs(Object... values) {
+        String[] args = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            args[i] = toArg(values[i]);
+        }
+        return args;
     }
 }
@@ -0,0 +1,202 @@
+package corp.ny.com.rufus.database;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import corp.ny.com.rufus.database.annotation.BelongsTo;
+import corp.ny.com.rufus.database.annotation.Constraint;
+import corp.ny.com.rufus.database.annotation.HasMany;
+
+/**
+ * A relation declared with {@link BelongsTo} or {@link HasMany}, resolved from the {@link Constraint} of the foreign key
+ * <br>Loading a relation for a list of models collects their keys and runs a single <b>WHERE key IN (...)</b>
+ * query per {@link #IN_CHUNK_SIZE} keys instead of one query per model
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * ArrayList&lt;Message&gt; messages = new Message().with("sender").where("receiverId", 1).get();
+ * messages.get(0).getSender();
+ * </pre></blockquote>
+ */
+public final class Relation {
+    /**
+     * Keys bound per query, SQLite refuse more than 999 parameters
+     */
+    public static final int IN_CHUNK_SIZE = 500;
+
+    private static final Map<Class<?>, Map<String, Relation>> registry = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Field field;
+    private final boolean many;
+    private final Class<?> related;
+    private final TableMetadata.Attribute localKey;
+    private final String remoteKey;
+
+    private Relation(Field field, boolean many, Class<?> related, TableMetadata.Attribute localKey, String remoteKey) {
+        this.name = field.getName();
+        this.field = field;
+        this.many = many;
+        this.related = related;
+        this.localKey = localKey;
+        this.remoteKey = remoteKey;
+    }
+
+    /**
+     * @param type the model class
+     * @param name the relation field name
+     * @return the relation
+     * @throws IllegalArgumentException if the class does not declare it
+     */
+    public static Relation of(Class<?> type, String name) {
+        Map<String, Relation> relations = registry.get(type);
+        if (relations == null) {
+            relations = resolve(type);
+            registry.put(type, relations);
+        }
+        Relation relation = relations.get(name);
+        if (relation == null)
+            throw new IllegalArgumentException(String.format("%s has no relation named %s", type.getSimpleName(), name));
+        return relation;
+    }
+
+    private static Map<String, Relation> resolve(Class<?> type) {
+        Map<String, Relation> relations = new HashMap<>();
+        TableMetadata metadata = TableMetadata.of(type);
+        for (Field field : type.getDeclaredFields()) {
+            BelongsTo belongsTo = field.getAnnotation(BelongsTo.class);
+            HasMany hasMany = field.getAnnotation(HasMany.class);
+            if (belongsTo == null && hasMany == null) continue;
+            if (!Modifier.isTransient(field.getModifiers()))
+                throw new IllegalStateException(String.format("The relation %s.%s must be transient", type.getSimpleName(), field.getName()));
+            field.setAccessible(true);
+
+            if (belongsTo != null) {
+                //this model hold the foreign key, the related one is referenced by its constraint
+                TableMetadata.Attribute foreignKey = metadata.getAttribute(belongsTo.foreignKey());
+                relations.put(field.getName(), new Relation(field, false, field.getType(),
+                        foreignKey, referencedColumn(type, foreignKey, belongsTo.foreignKey())));
+            } else {
+                //the related model hold the foreign key, it references a column of this model
+                Class<?> related = elementType(field);
+                TableMetadata.Attribute foreignKey = TableMetadata.of(related).getAttribute(hasMany.foreignKey());
+                TableMetadata.Attribute localKey = metadata.getAttribute(referencedColumn(related, foreignKey, hasMany.foreignKey()));
+                if (localKey == null)
+                    throw new IllegalStateException(String.format("%s.%s references a column missing from %s",
+                            related.getSimpleName(), hasMany.foreignKey(), type.getSimpleName()));
+                relations.put(field.getName(), new Relation(field, true, related, localKey, hasMany.foreignKey()));
+            }
+        }
+        return relations;
+    }
+
+    private static String referencedColumn(Class<?> owner, TableMetadata.Attribute foreignKey, String name) {
+        if (foreignKey == null || foreignKey.getConstraint() == null)
+            throw new IllegalStateException(String.format("%s.%s must be a field annotated with Constraint", owner.getSimpleName(), name));
+        return foreignKey.getConstraint().references();
+    }
+
+    private static Class<?> elementType(Field field) {
+        Type type = field.getGenericType();
+        if (field.getType().isAssignableFrom(ArrayList.class) && type instanceof ParameterizedType) {
+            Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (element instanceof Class) return (Class<?>) element;
+        }
+        throw new IllegalStateException(String.format("The relation %s must be declared as ArrayList<Model>", field.getName()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true for a {@link HasMany} relation
+     */
+    public boolean isMany() {
+        return many;
+    }
+
+    public Class<?> getRelated() {
+        return related;
+    }
+
+    /**
+     * @param database the database given to {@link Model#on(Database)} by the owner, <b>null</b> if it is not bound
+     * @return the table of the related model qualified by the database it is read from, see {@link Database#qualify(String)}
+     */
+    public String getRelatedTable(Database database) {
+        Model<?> template = instantiate();
+        return (database != null ? database : template.getDatabase()).qualify(template.getTableName());
+    }
+
+    /**
+     * Fill the relation field of every model
+     * <br>A missing row leaves a {@link BelongsTo} field <b>null</b> and a {@link HasMany} field empty
+     *
+     * @param models   models of the class declaring the relation
+     * @param database the database given to {@link Model#on(Database)} by the owner, the related rows are read
+     *                 from it, <b>null</b> to read them from the database of the related model
+     */
+    public void load(List<?> models, Database database) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Object model : models) {
+            Object key = localKey.get(model);
+            if (key != null) keys.add(String.valueOf(key));
+        }
+
+        Map<String, List<Object>> rows = new HashMap<>();
+        if (!keys.isEmpty()) {
+            Model<?> template = instantiate();
+            if (database != null) template.on(database);
+            TableMetadata.Attribute remote = TableMetadata.of(related).getAttribute(remoteKey);
+            List<String> pending = new ArrayList<>(keys);
+            for (int i = 0; i < pending.size(); i += IN_CHUNK_SIZE) {
+                List<String> chunk = pending.subList(i, Math.min(pending.size(), i + IN_CHUNK_SIZE));
+                for (Object row : template.whereIn(remoteKey, chunk.toArray()).get()) {
+                    String key = String.valueOf(remote.get(row));
+                    List<Object> matches = rows.get(key);
+                    if (matches == null) {
+                        matches = new ArrayList<>();
+                        rows.put(key, matches);
+                    }
+                    matches.add(row);
+                }
+            }
+        }
+
+        try {
+            for (Object model : models) {
+                Object key = localKey.get(model);
+                List<Object> matches = key == null ? null : rows.get(String.valueOf(key));
+                if (many)
+                    field.set(model, matches == null ? new ArrayList<>() : new ArrayList<>(matches));
+                else
+                    field.set(model, matches == null ? null : matches.get(0));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Model<?> instantiate() {
+        try {
+            return (Model<?>) related.newInstance();
+        } catch (InstantiationException | IllegalAccessException | ClassCastException e) {
+            throw new IllegalStateException(String.format("%s must be a model with a public no argument constructor", related.getName()), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s", name, many ? "has many" : "belongs to", related.getSimpleName());
+    }
+}
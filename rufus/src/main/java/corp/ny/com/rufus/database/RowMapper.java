@@ -0,0 +1,52 @@
+package corp.ny.com.rufus.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Reflection free mapping between a model and its table
+ * <br>Implementations are generated at compile time by the <b>rufus-compiler</b> annotation processor
+ * for every class annotated with {@link corp.ny.com.rufus.database.annotation.Table}
+ * and named after the model with a <b>_RowMapper</b> suffix
+ *
+ * @param <T> the model type
+ */
+public interface RowMapper<T> {
+
+    /**
+     * @return the columns read from a cursor
+     */
+    String[] getColumns();
+
+    /**
+     * @return the columns written by {@link #populate(Object, ContentValues)} and {@link #bind(Object, SQLiteStatement)} in binding order
+     */
+    String[] getBindColumns();
+
+    /**
+     * Copy the current cursor row into a model
+     *
+     * @param model   the model to fill
+     * @param cursor  cursor positioned on a row
+     * @param indexes cursor index of each {@link #getColumns()} entry or <b>-1</b> if the cursor does not hold it
+     */
+    void fill(T model, Cursor cursor, int[] indexes);
+
+    /**
+     * Put the model values into sql query parameter
+     *
+     * @param model  the model to read
+     * @param values the destination
+     */
+    void populate(T model, ContentValues values);
+
+    /**
+     * Bind the model values to a compiled statement, starting at index 1 in {@link #getBindColumns()} order
+     * <br>an auto increment column holding its default value is bound to <b>NULL</b>
+     *
+     * @param model     the model to read
+     * @param statement the destination
+     */
+    void bind(T model, SQLiteStatement statement);
+}
@@ -0,0 +1,147 @@
+package corp.ny.com.rufus.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+
+import java.util.concurrent.Callable;
+
+import corp.ny.com.rufus.system.RufusApp;
+
+/**
+ * Group several model writes in one transaction so they are committed together with a single sync
+ * <br>Every {@link Model} operation run on the calling thread joins the transaction. A transaction opened
+ * inside another one becomes a <b>SAVEPOINT</b>, when it fails only its own writes are rolled back and the
+ * exception goes on to the enclosing transaction. Change notifications of {@link InvalidationTracker} are
+ * held until the outermost transaction commits and dropped on rollback
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * Rufus.transaction(new Runnable() {
+ *     public void run() {
+ *         user.save();
+ *         message.save();
+ *         conversation.save();
+ *     }
+ * });
+ * </pre></blockquote>
+ */
+public final class Rufus {
+    private static final ThreadLocal<Integer> depth = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
+
+    private Rufus() {
+    }
+
+    /**
+     * Run work in a transaction of the default database
+     *
+     * @param work the writes
+     */
+    public static void transaction(final Runnable work) {
+        transaction(RufusApp.getDataBaseInstance(), work);
+    }
+
+    /**
+     * Run work in a transaction of the default database
+     *
+     * @param work the writes
+     * @return the result of work
+     * @throws Exception the failure of work, after the rollback
+     */
+    public static <R> R transaction(Callable<R> work) throws Exception {
+        return transaction(RufusApp.getDataBaseInstance(), work);
+    }
+
+    /**
+     * Run work in a transaction
+     *
+     * @param db   the database
+     * @param work the writes
+     */
+    public static void transaction(SQLiteDatabase db, final Runnable work) {
+        try {
+            transaction(db, new Callable<Void>() {
+                @Override
+                public Void call() {
+                    work.run();
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            //a Runnable cannot throw a checked exception
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Run work in a transaction
+     *
+     * @param db   the database
+     * @param work the writes
+     * @return the result of work
+     * @throws Exception the failure of work, after the rollback
+     */
+    public static <R> R transaction(SQLiteDatabase db, Callable<R> work) throws Exception {
+        if (!db.inTransaction())
+            return outermost(db, work);
+
+        int level = depth.get() + 1;
+        String savepoint = "rufus_" + level;
+        depth.set(level);
+        db.execSQL("SAVEPOINT " + savepoint);
+        try {
+            R result = work.call();
+            db.execSQL("RELEASE SAVEPOINT " + savepoint);
+            return result;
+        } catch (Exception | Error e) {
+            //before Pie Android takes any statement starting with ROL for the ROLLBACK of the whole transaction,
+            //the leading ; keeps it a plain statement
+            db.execSQL(";ROLLBACK TO SAVEPOINT " + savepoint);
+            db.execSQL("RELEASE SAVEPOINT " + savepoint);
+            //rows read or written inside the savepoint may be cached
+            EntityCache.clearAll();
+            throw e;
+        } finally {
+            depth.set(level - 1);
+        }
+    }
+
+    private static <R> R outermost(SQLiteDatabase db, Callable<R> work) throws Exception {
+        boolean success = false;
+        InvalidationTracker.beginDeferral();
+        EntityCache.beginTransaction();
+        //with write-ahead logging an immediate transaction lets readers go on
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && db.isWriteAheadLoggingEnabled())
+            db.beginTransactionNonExclusive();
+        else db.beginTransaction();
+        try {
+            R result = work.call();
+            db.setTransactionSuccessful();
+            success = true;
+            return result;
+        } finally {
+            boolean committed = false;
+            try {
+                db.endTransaction();
+                committed = success;
+            } finally {
+                //rows another thread cached while this one wrote are dropped, committed or not
+                EntityCache.endTransaction();
+                InvalidationTracker.endDeferral(committed);
+            }
+        }
+    }
+
+    /**
+     * @return true if the calling thread is inside {@link #transaction(Runnable)}
+     */
+    public static boolean inTransaction() {
+        return InvalidationTracker.isDeferring();
+    }
+}
@@ -1,11 +1,12 @@
 package corp.ny.com.rufus.database;
 
+import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
 
+import corp.ny.com.rufus.database.annotation.Indexes;
 import corp.ny.com.rufus.database.annotation.Table;
 import corp.ny.com.rufus.database.exceptions.TableException;
 
@@ -16,6 +17,8 @@ public class Schema {
     private String tableName;
     private List<Column> columns = new ArrayList<>();
     private List<Constraint> constraints = new ArrayList<>();
+    private List<Index> indexes = new ArrayList<>();
+    private FullText fullText;
 
     private Schema(String tableName) {
         this.tableName = tableName;
@@ -39,100 +42,125 @@ public class Schema {
                     + " is not annotated with Table");
         }
 
-        for (Field field : clazz.getDeclaredFields()) {
-            field.setAccessible(true);
-            if (field.isAnnotationPresent(corp.ny.com.rufus.database.annotation.Constraint.class))
+        if (clazz.isAnnotationPresent(Indexes.class))
+            for (corp.ny.com.rufus.database.annotation.Index index : clazz.getAnnotation(Indexes.class).value()) {
+                schema.addIndex(index, null);
+            }
+        if (clazz.isAnnotationPresent(corp.ny.com.rufus.database.annotation.Index.class))
+            schema.addIndex(clazz.getAnnotation(corp.ny.com.rufus.database.annotation.Index.class), null);
+
+        List<String> searchable = new ArrayList<>();
+        for (TableMetadata.Attribute attribute : TableMetadata.of(clazz).getAttributes()) {
+            Class<?> type = attribute.getField().getType();
+            corp.ny.com.rufus.database.annotation.Column column = attribute.getColumn();
+            corp.ny.com.rufus.database.annotation.Constraint constraint = attribute.getConstraint();
+            corp.ny.com.rufus.database.annotation.Index index = attribute.getField().getAnnotation(corp.ny.com.rufus.database.annotation.Index.class);
+            if (index != null)
+                schema.addIndex(index, attribute.getName());
+            if (constraint != null)
                 schema.constraints.add(
-                        Constraint.instantiate(field.getName())
-                                .on(field.getAnnotation(corp.ny.com.rufus.database.annotation.Constraint.class).onTable())
-                                .references(field.getAnnotation(corp.ny.com.rufus.database.annotation.Constraint.class).references())
-                                .onUpdate(field.getAnnotation(corp.ny.com.rufus.database.annotation.Constraint.class).onUpdate())
-                                .onDelete(field.getAnnotation(corp.ny.com.rufus.database.annotation.Constraint.class).onDelete())
+                        Constraint.instantiate(attribute.getName())
+                                .on(constraint.onTable())
+                                .references(constraint.references())
+                                .onUpdate(constraint.onUpdate())
+                                .onDelete(constraint.onDelete())
                 );
 
-            if (field.isAnnotationPresent(corp.ny.com.rufus.database.annotation.Column.class)) {
-                if (field.getType() == String.class && field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).check().length > 0)
+            if (column != null) {
+                if (column.searchable())
+                    searchable.add(attribute.getName());
+                if (type == String.class && column.check().length > 0)
                     schema.columns.add(new Column(
-                            String.format("`%s` VARCHAR", field.getName()),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).nullable(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).unique(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).primary(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).increment(),
+                            String.format("`%s` VARCHAR", attribute.getName()),
+                            column.nullable(),
+                            column.unique(),
+                            column.primary(),
+                            column.increment(),
                             false,
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).varCharSize(),
-                            getDefaultValue(field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).defaultString()),
-                            String.format("['%s']",TextUtils.join("','",field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).check()))
+                            column.varCharSize(),
+                            getDefaultValue(column.defaultString()),
+                            String.format("['%s']",TextUtils.join("','",column.check()))
                     ));
-                else if (field.getType() == String.class)
+                else if (type == String.class)
                     schema.columns.add(new Column(
-                            String.format("`%s` TEXT", field.getName()),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).nullable(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).unique(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).primary(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).increment(),
+                            String.format("`%s` TEXT", attribute.getName()),
+                            column.nullable(),
+                            column.unique(),
+                            column.primary(),
+                            column.increment(),
                             false,
                             0,
-                            getDefaultValue(field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).defaultString()),
+                            getDefaultValue(column.defaultString()),
                             null
 
                     ));
-                else if (field.getType() == boolean.class)
+                else if (type == boolean.class)
                     schema.columns.add(new Column(
-                            String.format("`%s` INTEGER", field.getName()),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).nullable(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).unique(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).primary(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).increment(),
+                            String.format("`%s` INTEGER", attribute.getName()),
+                            column.nullable(),
+                            column.unique(),
+                            column.primary(),
+                            column.increment(),
                             false,
                             1,
-                           getDefaultValue( String.valueOf(field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).defaultInt())),
+                           getDefaultValue( String.valueOf(column.defaultInt())),
                             null
 
                     ));
-                else if (field.getType() == double.class)
+                else if (type == double.class)
                     schema.columns.add(new Column(
-                            String.format("`%s` DOUBLE", field.getName()),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).nullable(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).unique(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).primary(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).increment(),
+                            String.format("`%s` DOUBLE", attribute.getName()),
+                            column.nullable(),
+                            column.unique(),
+                            column.primary(),
+                            column.increment(),
                             false,
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).intSize(),
-                            getDefaultValue(String.valueOf(field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).defaultInt())),
+                            column.intSize(),
+                            getDefaultValue(String.valueOf(column.defaultInt())),
                             null
 
                     ));
-                else if (field.getType() == float.class)
+                else if (type == float.class)
                     schema.columns.add(new Column(
-                            String.format("`%s` FLOAT", field.getName()),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).nullable(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).unique(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).primary(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).increment(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).signed(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).intSize(),
-                            getDefaultValue(String.valueOf(field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).defaultInt())),
+                            String.format("`%s` FLOAT", attribute.getName()),
+                            column.nullable(),
+                            column.unique(),
+                            column.primary(),
+                            column.increment(),
+                            column.signed(),
+                            column.intSize(),
+                            getDefaultValue(String.valueOf(column.defaultInt())),
                             null
 
                     ));
-                else if (field.getType() == int.class || field.getType() == long.class || field.getType() == byte.class || field.getType() == short.class)
+                else if (type == int.class || type == long.class || type == byte.class || type == short.class)
                     schema.columns.add(new Column(
-                            String.format("`%s` INTEGER", field.getName()),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).nullable(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).unique(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).primary(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).increment(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).signed(),
-                            field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).intSize(),
-                            getDefaultValue(field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class).defaultInt()),
+                            String.format("`%s` INTEGER", attribute.getName()),
+                            column.nullable(),
+                            column.unique(),
+                            column.primary(),
+                            column.increment(),
+                            column.signed(),
+                            column.intSize(),
+                            getDefaultValue(column.defaultInt()),
                             null
 
                     ));
             }
         }
+        if (!searchable.isEmpty())
+            schema.fullText(searchable.toArray(new String[searchable.size()]));
         return schema;
     }
 
+    private void addIndex(corp.ny.com.rufus.database.annotation.Index annotation, String column) throws TableException {
+        String[] columns = annotation.columns().length > 0 || column == null ? annotation.columns() : new String[]{column};
+        if (columns.length == 0)
+            throw new TableException(String.format("The index %s of %s has no column", annotation.name(), tableName));
+        Index index = index(columns).name(annotation.name()).where(annotation.where());
+        if (annotation.unique()) index.unique();
+    }
+
     private static String getDefaultValue(String value){
         return value.length()==0?null:value;
     }
@@ -247,15 +275,96 @@ public class Schema {
         return constraints.get(constraints.size() - 1);
     }
 
-    @Override
-    public String toString() {
-        String script =
-                String.format("CREATE TABLE IF NOT EXISTS %s ( %s%s );"
-                , tableName, TextUtils.join(",", columns.toArray())
+    /**
+     * Create an index on one or several columns of the table.
+     *
+     * @param column the indexed columns in order
+     * @return the index
+     */
+    public Index index(String... column) {
+        indexes.add(Index.instantiate(tableName, column));
+        return indexes.get(indexes.size() - 1);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public List<Constraint> getConstraints() {
+        return constraints;
+    }
+
+    public List<Index> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Make columns searchable with {@link Model#search(String)} through a full text shadow table.
+     *
+     * @param column the searchable columns
+     * @return the full text index
+     */
+    public FullText fullText(String... column) {
+        fullText = FullText.instantiate(tableName, column);
+        return fullText;
+    }
+
+    public FullText getFullText() {
+        return fullText;
+    }
+
+    /**
+     * @return the create table statement followed by the create index and full text statements
+     */
+    public List<String> getStatements() {
+        List<String> statements = getTableStatements();
+        if (fullText != null)
+            statements.addAll(fullText.getStatements());
+        return statements;
+    }
+
+    private List<String> getTableStatements() {
+        List<String> statements = new ArrayList<>();
+        statements.add(getCreateStatement(tableName));
+        for (Index index : indexes) {
+            statements.add(index.toString());
+        }
+        return statements;
+    }
+
+    /**
+     * @param name the name given to the table, another name is used to rebuild a table
+     * @return the create table statement of the columns and constraints
+     */
+    String getCreateStatement(String name) {
+        return String.format("CREATE TABLE IF NOT EXISTS %s ( %s%s );"
+                , name, TextUtils.join(",", columns.toArray())
                 , (constraints.isEmpty() ? ""
                         : String.format(",\n%s"
                         , TextUtils.join(",", constraints.toArray()))));
-            System.out.println(script);
-        return script;
+    }
+
+    /**
+     * Run every statement of the schema, {@link SQLiteDatabase#execSQL(String)} only execute the first
+     * statement of a script
+     *
+     * @param db the database
+     */
+    public void create(SQLiteDatabase db) {
+        for (String statement : getTableStatements()) {
+            db.execSQL(statement);
+        }
+        // the shadow table has no IF NOT EXISTS before SQLite 3.7.11 and must index the rows already stored
+        if (fullText != null)
+            fullText.create(db);
+    }
+
+    @Override
+    public String toString() {
+        return TextUtils.join("\n", getStatements());
     }
 }
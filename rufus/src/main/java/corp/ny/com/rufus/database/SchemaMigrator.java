@@ -0,0 +1,411 @@
+package corp.ny.com.rufus.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bring a stored table to its {@link Schema} with the fewest statements
+ * <br>The stored table is read with <b>PRAGMA table_info</b>, <b>index_list</b> and <b>foreign_key_list</b>.
+ * A column SQLite can append is added with <b>ALTER TABLE ADD COLUMN</b> and a missing index is created, the
+ * rows stay in place. A removed column, a changed type affinity, key, constraint, nullability or default, and a
+ * new <b>NOT NULL</b> column without default need a rebuild: the table is created under another name, the common
+ * columns are copied, the old table is dropped and the new one renamed.
+ * CHECK constraints are not compared and an index missing from the schema is never dropped
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * SchemaMigrator.migrate(db, new User().getSchema());
+ * </pre></blockquote>
+ */
+public final class SchemaMigrator {
+    static final String REBUILD_SUFFIX = "_rufus_rebuild";
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Create the table if it is missing, otherwise run the steps of {@link #plan(Schema, LiveTable)}
+     * in a transaction. Foreign keys must be disabled, dropping a parent table would delete its children.
+     * The rows are then checked against their foreign keys before the commit
+     *
+     * @param db     the database
+     * @param schema the expected table
+     * @throws SQLiteConstraintException if a row references a missing parent, nothing is migrated
+     */
+    public static void migrate(SQLiteDatabase db, Schema schema) {
+        LiveTable live = LiveTable.read(db, schema.getTableName());
+        if (live == null) {
+            schema.create(db);
+            return;
+        }
+        List<String> steps = plan(schema, live);
+        if (steps.isEmpty()) return;
+        db.beginTransaction();
+        try {
+            for (String step : steps) {
+                db.execSQL(step);
+            }
+            //rows are copied while foreign keys are off, a new or changed key is not enforced on them
+            checkForeignKeys(db, schema);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            FullText.forget(schema.getTableName());
+        }
+    }
+
+    /**
+     * The equivalent of <b>PRAGMA foreign_key_check</b>, which needs SQLite 3.7.16 (Lollipop), for the keys
+     * of the schema. A parent table not created yet is skipped, it may come later in the same upgrade
+     */
+    private static void checkForeignKeys(SQLiteDatabase db, Schema schema) {
+        for (Constraint constraint : schema.getConstraints()) {
+            if (constraint.getColumn() == null || LiveTable.read(db, constraint.getTable()) == null) continue;
+            Cursor cursor = db.rawQuery(String.format("SELECT c.rowid FROM %s c WHERE c.%s IS NOT NULL AND NOT EXISTS "
+                            + "(SELECT 1 FROM %s p WHERE p.%s = c.%s) LIMIT 10", Clause.quote(schema.getTableName()),
+                    Clause.quote(constraint.getColumn()), Clause.quote(constraint.getTable()),
+                    Clause.quote(constraint.getReferences()), Clause.quote(constraint.getColumn())), null);
+            try {
+                if (!cursor.moveToFirst()) continue;
+                List<String> rowIds = new ArrayList<>();
+                do {
+                    rowIds.add(cursor.getString(0));
+                } while (cursor.moveToNext());
+                throw new SQLiteConstraintException(String.format("Migration of %s leaves rows without parent in %s, rowid %s",
+                        schema.getTableName(), constraint.getTable(), TextUtils.join(", ", rowIds)));
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * @param db     the database
+     * @param schema the expected table
+     * @return the statements that would bring the stored table to the schema
+     */
+    public static List<String> plan(SQLiteDatabase db, Schema schema) {
+        LiveTable live = LiveTable.read(db, schema.getTableName());
+        return live == null ? schema.getStatements() : plan(schema, live);
+    }
+
+    /**
+     * @param schema the expected table
+     * @param live   the stored table
+     * @return the statements that bring the stored table to the schema, empty if it is up to date
+     */
+    public static List<String> plan(Schema schema, LiveTable live) {
+        String table = schema.getTableName();
+        List<String> steps = new ArrayList<>();
+        boolean rebuild = needsRebuild(schema, live);
+
+        //the triggers of the shadow table name the columns, they go before the columns change
+        FullText fullText = schema.getFullText();
+        boolean searchable = fullText != null && live.fullText != null && !rebuild
+                && Arrays.equals(lower(fullText.getColumns()), live.fullText);
+        if (live.fullText != null && !searchable)
+            steps.addAll(FullText.getDropStatements(table));
+
+        if (rebuild) {
+            steps.addAll(rebuild(schema, live));
+        } else {
+            for (Column column : schema.getColumns()) {
+                if (!live.columns.containsKey(key(column.getName())))
+                    steps.add(String.format("ALTER TABLE %s ADD COLUMN %s;", table, column.toString().trim()));
+            }
+            for (Index index : schema.getIndexes()) {
+                String name = key(index.getName());
+                String[] columns = live.indexes.get(name);
+                if (columns != null && Arrays.equals(columns, lower(index.getColumns()))
+                        && live.uniqueIndexes.contains(name) == index.isUnique())
+                    continue;
+                if (columns != null)
+                    steps.add(String.format("DROP INDEX IF EXISTS `%s`;", index.getName()));
+                steps.add(index.toString());
+            }
+        }
+
+        if (fullText != null && !searchable) {
+            steps.addAll(fullText.getStatements());
+            steps.addAll(fullText.getRebuildStatements());
+        }
+        return steps;
+    }
+
+    private static boolean needsRebuild(Schema schema, LiveTable live) {
+        Set<String> expected = new HashSet<>();
+        Set<String> primaries = new HashSet<>();
+        Set<String> uniques = new HashSet<>();
+        Set<String> foreignKeys = new HashSet<>();
+        Set<String> referencing = new HashSet<>();
+        for (Column column : schema.getColumns()) {
+            expected.add(key(column.getName()));
+            if (column.isPrimary()) primaries.add(key(column.getName()));
+        }
+        for (Constraint constraint : schema.getConstraints()) {
+            for (String column : constraint.getPrimaryColumns()) {
+                primaries.add(key(column));
+            }
+            if (constraint.getColumn() != null) {
+                foreignKeys.add(foreignKey(constraint.getColumn(), constraint.getTable(), constraint.getReferences(),
+                        constraint.getOnDelete().toString(), constraint.getOnUpdate().toString()));
+                referencing.add(key(constraint.getColumn()));
+            }
+        }
+        for (Column column : schema.getColumns()) {
+            //a primary key is unique anyway, its unique index cannot be told apart
+            if (column.isUnique() && !primaries.contains(key(column.getName())))
+                uniques.add(key(column.getName()));
+        }
+        Set<String> liveUniques = new HashSet<>(live.uniqueColumns);
+        liveUniques.removeAll(primaries);
+
+        if (!expected.containsAll(live.columns.keySet())
+                || !primaries.equals(live.primaries)
+                || !uniques.equals(liveUniques)
+                || !foreignKeys.equals(live.foreignKeys))
+            return true;
+
+        for (Column column : schema.getColumns()) {
+            LiveColumn stored = live.columns.get(key(column.getName()));
+            if (stored == null) {
+                //ALTER TABLE cannot add a key, a table constraint or a NOT NULL column without default
+                if (column.isPrimary() || column.isUnique() || referencing.contains(key(column.getName()))
+                        || (column.isNotNull() && column.getDefValue() == null))
+                    return true;
+            } else if (!affinity(column.getType()).equals(affinity(stored.type))
+                    || column.isNotNull() != stored.notNull
+                    || !same(defaultOf(column), stored.defValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> rebuild(Schema schema, LiveTable live) {
+        String table = schema.getTableName();
+        String temporary = table + REBUILD_SUFFIX;
+        List<String> into = new ArrayList<>();
+        List<String> from = new ArrayList<>();
+        for (Column column : schema.getColumns()) {
+            String name = Clause.quote(column.getName());
+            if (live.columns.containsKey(key(column.getName()))) {
+                into.add(name);
+                from.add(name);
+            } else if (column.isNotNull() && column.getDefValue() == null) {
+                //the stored rows get the value a new field of the model holds
+                into.add(name);
+                from.add(zero(column.getType()));
+            }
+        }
+
+        List<String> steps = new ArrayList<>();
+        steps.add(String.format("DROP TABLE IF EXISTS %s;", temporary));
+        steps.add(schema.getCreateStatement(temporary));
+        if (!into.isEmpty())
+            steps.add(String.format("INSERT INTO %s (%s) SELECT %s FROM %s;",
+                    temporary, TextUtils.join(",", into), TextUtils.join(",", from), table));
+        steps.add(String.format("DROP TABLE %s;", table));
+        steps.add(String.format("ALTER TABLE %s RENAME TO %s;", temporary, table));
+        for (Index index : schema.getIndexes()) {
+            steps.add(index.toString());
+        }
+        return steps;
+    }
+
+    /**
+     * @param type a declared type
+     * @return its affinity following the rules of SQLite, the size of a type does not matter
+     */
+    static String affinity(String type) {
+        String upper = type == null ? "" : type.toUpperCase(Locale.US);
+        if (upper.contains("INT")) return "INTEGER";
+        if (upper.contains("CHAR") || upper.contains("CLOB") || upper.contains("TEXT")) return "TEXT";
+        if (upper.isEmpty() || upper.contains("BLOB")) return "BLOB";
+        if (upper.contains("REAL") || upper.contains("FLOA") || upper.contains("DOUB")) return "REAL";
+        return "NUMERIC";
+    }
+
+    private static String zero(String type) {
+        switch (affinity(type)) {
+            case "TEXT":
+                return "''";
+            case "BLOB":
+                return "X''";
+            default:
+                return "0";
+        }
+    }
+
+    /**
+     * The default as written in the create statement, the way table_info reports it
+     */
+    private static String defaultOf(Column column) {
+        return column.getDefValue() == null ? null : String.format("'%s'", column.getDefValue());
+    }
+
+    private static boolean same(String left, String right) {
+        return left == null ? right == null : left.equals(right);
+    }
+
+    private static String foreignKey(String column, String table, String references, String onDelete, String onUpdate) {
+        return key(String.format("%s>%s.%s %s %s", column, table, references, onDelete, onUpdate));
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.US);
+    }
+
+    private static String[] lower(String[] names) {
+        String[] lower = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            lower[i] = key(names[i]);
+        }
+        return lower;
+    }
+
+    /**
+     * A column as stored
+     */
+    static final class LiveColumn {
+        final String type;
+        final boolean notNull;
+        final String defValue;
+
+        LiveColumn(String type, boolean notNull, String defValue) {
+            this.type = type;
+            this.notNull = notNull;
+            this.defValue = defValue;
+        }
+    }
+
+    /**
+     * A table as stored, names are compared without case like SQLite does
+     */
+    public static final class LiveTable {
+        private final Map<String, LiveColumn> columns = new LinkedHashMap<>();
+        private final Set<String> primaries = new HashSet<>();
+        private final Set<String> uniqueColumns = new HashSet<>();
+        private final Map<String, String[]> indexes = new HashMap<>();
+        private final Set<String> uniqueIndexes = new HashSet<>();
+        private final Set<String> foreignKeys = new HashSet<>();
+        private String[] fullText;
+
+        /**
+         * @param db    the database
+         * @param table the table name
+         * @return the stored table or <b>null</b> if there is none
+         */
+        public static LiveTable read(SQLiteDatabase db, String table) {
+            LiveTable live = new LiveTable();
+            Cursor cursor = db.rawQuery(String.format("PRAGMA table_info(%s)", Clause.quote(table)), null);
+            try {
+                while (cursor.moveToNext()) {
+                    String name = cursor.getString(cursor.getColumnIndex("name"));
+                    int defValue = cursor.getColumnIndex("dflt_value");
+                    live.column(name, cursor.getString(cursor.getColumnIndex("type")),
+                            cursor.getInt(cursor.getColumnIndex("notnull")) != 0,
+                            cursor.isNull(defValue) ? null : cursor.getString(defValue),
+                            cursor.getInt(cursor.getColumnIndex("pk")) != 0);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (live.columns.isEmpty()) return null;
+
+            Map<String, Boolean> indexes = new LinkedHashMap<>();
+            cursor = db.rawQuery(String.format("PRAGMA index_list(%s)", Clause.quote(table)), null);
+            try {
+                while (cursor.moveToNext()) {
+                    indexes.put(cursor.getString(cursor.getColumnIndex("name")),
+                            cursor.getInt(cursor.getColumnIndex("unique")) != 0);
+                }
+            } finally {
+                cursor.close();
+            }
+            for (Map.Entry<String, Boolean> index : indexes.entrySet()) {
+                List<String> columns = names(db, String.format("PRAGMA index_info(`%s`)", index.getKey()));
+                if (!index.getKey().startsWith("sqlite_autoindex_"))
+                    live.index(index.getKey(), index.getValue(), columns.toArray(new String[columns.size()]));
+                else if (index.getValue() && columns.size() == 1)
+                    live.unique(columns.get(0));
+            }
+
+            cursor = db.rawQuery(String.format("PRAGMA foreign_key_list(%s)", Clause.quote(table)), null);
+            try {
+                while (cursor.moveToNext()) {
+                    live.foreignKey(cursor.getString(cursor.getColumnIndex("from")),
+                            cursor.getString(cursor.getColumnIndex("table")),
+                            cursor.getString(cursor.getColumnIndex("to")),
+                            cursor.getString(cursor.getColumnIndex("on_delete")),
+                            cursor.getString(cursor.getColumnIndex("on_update")));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            List<String> searchable = names(db, String.format("PRAGMA table_info(%s)", FullText.tableOf(table)));
+            if (!searchable.isEmpty())
+                live.fullText(searchable.toArray(new String[searchable.size()]));
+            return live;
+        }
+
+        private static List<String> names(SQLiteDatabase db, String pragma) {
+            List<String> names = new ArrayList<>();
+            Cursor cursor = db.rawQuery(pragma, null);
+            try {
+                while (cursor.moveToNext()) {
+                    names.add(cursor.getString(cursor.getColumnIndex("name")));
+                }
+            } finally {
+                cursor.close();
+            }
+            return names;
+        }
+
+        public LiveTable column(String name, String type, boolean notNull, String defValue, boolean primary) {
+            columns.put(key(name), new LiveColumn(type, notNull, defValue));
+            if (primary) primaries.add(key(name));
+            return this;
+        }
+
+        /**
+         * @param column a column carrying a <b>UNIQUE</b> constraint
+         */
+        public LiveTable unique(String column) {
+            uniqueColumns.add(key(column));
+            return this;
+        }
+
+        public LiveTable index(String name, boolean unique, String... columns) {
+            indexes.put(key(name), lower(columns));
+            if (unique) uniqueIndexes.add(key(name));
+            return this;
+        }
+
+        public LiveTable foreignKey(String column, String table, String references, String onDelete, String onUpdate) {
+            foreignKeys.add(SchemaMigrator.foreignKey(column, table, references, onDelete, onUpdate));
+            return this;
+        }
+
+        /**
+         * @param columns the columns of the full text shadow table
+         */
+        public LiveTable fullText(String... columns) {
+            fullText = lower(columns);
+            return this;
+        }
+    }
+}
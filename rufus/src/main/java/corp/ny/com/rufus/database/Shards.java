@@ -0,0 +1,82 @@
+package corp.ny.com.rufus.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import corp.ny.com.rufus.system.DatabaseConfig;
+
+/**
+ * Spread a very large table over several database files by hashing a key
+ * <br>Shard <b>i</b> of <b>name</b> is the database <b>name_i</b> stored in <b>name_i.db</b>, each one with its
+ * own connections and writer. The hash of a key never changes so a row is always read from the shard it was
+ * written to, the number of shards must stay the same once rows are stored
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * Shards messages = Shards.register("messages", 4, new DatabaseConfig().version(1));
+ * for (Database shard : messages.getDatabases()) shard.addOnUpgradeSchema(1, new Message().getSchema());
+ *
+ * message.on(messages.of(message.getConversationId())).save();
+ * </pre></blockquote>
+ */
+public final class Shards {
+    private final String name;
+    private final List<Database> databases;
+
+    private Shards(String name, List<Database> databases) {
+        this.name = name;
+        this.databases = databases;
+    }
+
+    /**
+     * Register the databases of every shard
+     *
+     * @param name   the prefix of the database names
+     * @param count  the number of shards
+     * @param config the configuration of every shard, the file name is replaced
+     * @return the shards
+     */
+    public static Shards register(String name, int count, DatabaseConfig config) {
+        if (count < 1)
+            throw new IllegalArgumentException(String.format("%s needs at least one shard", name));
+        List<Database> databases = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String shard = String.format("%s_%s", name, i);
+            databases.add(Database.register(shard, config.copy().databaseName(shard + ".db")));
+        }
+        return new Shards(name, Collections.unmodifiableList(databases));
+    }
+
+    /**
+     * @param key the sharding key, like the id of the owner of the rows
+     * @return the index of the shard holding the key
+     */
+    public int indexOf(Object key) {
+        // String.hashCode is specified so the index is the same on every run
+        return (String.valueOf(key).hashCode() & 0x7fffffff) % databases.size();
+    }
+
+    /**
+     * @param key the sharding key
+     * @return the database holding the key
+     */
+    public Database of(Object key) {
+        return databases.get(indexOf(key));
+    }
+
+    /**
+     * @return every shard, to query or migrate all of them
+     */
+    public List<Database> getDatabases() {
+        return databases;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return databases.size();
+    }
+}
@@ -0,0 +1,518 @@
+package corp.ny.com.rufus.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import corp.ny.com.rufus.database.annotation.Table;
+
+/**
+ * Reflection data of a model class, resolved once and shared by every instance of that class
+ * <br>Reading a row used to walk {@link Class#getDeclaredFields()} for each column, the registry
+ * keeps the field handles, their type code and the cursor column indexes instead
+ */
+public final class TableMetadata {
+    public static final int TYPE_OTHER = 0;
+    public static final int TYPE_STRING = 1;
+    public static final int TYPE_INT = 2;
+    public static final int TYPE_LONG = 3;
+    public static final int TYPE_SHORT = 4;
+    public static final int TYPE_BYTE = 5;
+    public static final int TYPE_BOOLEAN = 6;
+    public static final int TYPE_DOUBLE = 7;
+    public static final int TYPE_FLOAT = 8;
+
+    /**
+     * Snapshot value of a column the query did not fetch
+     */
+    static final Object NOT_LOADED = new Object();
+
+    private static final Map<Class<?>, TableMetadata> registry = new ConcurrentHashMap<>();
+    private static volatile boolean mappersEnabled = true;
+
+    private final Class<?> type;
+    private final boolean annotated;
+    private final List<Attribute> attributes;
+    private final List<Attribute> columns;
+    private final Map<String, Attribute> byName;
+    private final Attribute primary;
+    private final RowMapper<Object> mapper;
+    private final boolean tracked;
+    private volatile Binding binding;
+
+    private TableMetadata(Class<?> type) {
+        this.type = type;
+        this.annotated = type.isAnnotationPresent(Table.class);
+        List<Attribute> attributes = new ArrayList<>();
+        List<Attribute> columns = new ArrayList<>();
+        Map<String, Attribute> byName = new HashMap<>();
+        Attribute primary = null;
+        for (Field field : type.getDeclaredFields()) {
+            //constants, compiler generated and transient fields are never stored
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic())
+                continue;
+            field.setAccessible(true);
+            Attribute attribute = new Attribute(field);
+            attributes.add(attribute);
+            byName.put(attribute.name, attribute);
+            if (attribute.column != null) {
+                columns.add(attribute);
+                if (primary == null && attribute.column.primary())
+                    primary = attribute;
+            }
+        }
+        this.attributes = Collections.unmodifiableList(attributes);
+        this.columns = Collections.unmodifiableList(columns);
+        this.byName = byName;
+        this.primary = primary;
+        this.mapper = annotated ? findMapper(type) : null;
+        this.tracked = !columns.isEmpty() && !overridesWrite(type);
+    }
+
+    /**
+     * @return true if the model builds its own values by overriding {@link Model#sqlQueryBuilder(ContentValues)}
+     * or {@link Model#prepareStatement(ContentValues)}
+     */
+    private static boolean overridesWrite(Class<?> type) {
+        if (!Model.class.isAssignableFrom(type)) return false;
+        try {
+            return type.getMethod("sqlQueryBuilder", ContentValues.class).getDeclaringClass() != Model.class
+                    || type.getMethod("prepareStatement", ContentValues.class).getDeclaringClass() != Model.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the metadata of a class, it is built on first access only
+     *
+     * @param type the model class
+     * @return the shared metadata
+     */
+    public static TableMetadata of(Class<?> type) {
+        TableMetadata metadata = registry.get(type);
+        if (metadata == null) {
+            metadata = new TableMetadata(type);
+            registry.put(type, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Enable or disable the generated {@link RowMapper}, mainly useful to compare them with the reflection path
+     *
+     * @param enabled false to always use reflection
+     */
+    public static void setMappersEnabled(boolean enabled) {
+        mappersEnabled = enabled;
+    }
+
+    /**
+     * Look for the mapper generated by the annotation processor
+     *
+     * @return the mapper or <b>null</b> if the processor did not run on this class
+     */
+    @SuppressWarnings("unchecked")
+    private static RowMapper<Object> findMapper(Class<?> type) {
+        try {
+            return (RowMapper<Object>) Class.forName(type.getName() + "_RowMapper").newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (InstantiationException | IllegalAccessException | ClassCastException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static int typeCode(Class<?> type) {
+        if (type == String.class) return TYPE_STRING;
+        if (type == int.class) return TYPE_INT;
+        if (type == long.class) return TYPE_LONG;
+        if (type == short.class) return TYPE_SHORT;
+        if (type == byte.class) return TYPE_BYTE;
+        if (type == boolean.class) return TYPE_BOOLEAN;
+        if (type == double.class) return TYPE_DOUBLE;
+        if (type == float.class) return TYPE_FLOAT;
+        return TYPE_OTHER;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the changes of a row read from the table can be tracked column by column, a model without
+     * {@link corp.ny.com.rufus.database.annotation.Column} or writing its own values always writes every column
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * @return true if the class is annotated with {@link Table}
+     */
+    public boolean isAnnotated() {
+        return annotated;
+    }
+
+    /**
+     * @return every stored field in declaration order
+     */
+    public List<Attribute> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return fields annotated with {@link corp.ny.com.rufus.database.annotation.Column} in declaration order
+     */
+    public List<Attribute> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the primary key field or <b>null</b> if none is annotated
+     */
+    public Attribute getPrimary() {
+        return primary;
+    }
+
+    public Attribute getAttribute(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @return the generated mapper or <b>null</b> if reflection is used
+     */
+    public RowMapper<Object> getMapper() {
+        return mappersEnabled ? mapper : null;
+    }
+
+    /**
+     * Copy the current cursor row into a model
+     *
+     * @param object the model to fill
+     * @param cursor cursor positioned on a row
+     */
+    public void fill(Object object, Cursor cursor) {
+        Binding binding = bind(cursor);
+        RowMapper<Object> mapper = getMapper();
+        if (mapper != null) {
+            mapper.fill(object, cursor, binding.mapperIndexes);
+            return;
+        }
+        for (int i = 0; i < binding.indexes.length; i++) {
+            binding.targets[i].read(object, cursor, binding.indexes[i]);
+        }
+    }
+
+    /**
+     * Put every column value of a model into sql query parameter
+     *
+     * @param object the model to read
+     * @param values the destination
+     * @return values
+     */
+    public ContentValues populate(Object object, ContentValues values) {
+        if (!annotated) return values;
+        RowMapper<Object> mapper = getMapper();
+        if (mapper != null) {
+            mapper.populate(object, values);
+            return values;
+        }
+        for (Attribute attribute : columns) {
+            attribute.put(object, values);
+        }
+        return values;
+    }
+
+    /**
+     * Remember the column values of a model just filled from the current cursor row
+     *
+     * @param object the filled model
+     * @param cursor the cursor it was filled from
+     * @return one value per {@link #getColumns()}, {@link #NOT_LOADED} for the columns missing from the cursor
+     */
+    Object[] snapshot(Object object, Cursor cursor) {
+        boolean[] loaded = bind(cursor).loaded;
+        Object[] snapshot = new Object[columns.size()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = loaded[i] ? columns.get(i).get(object) : NOT_LOADED;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Put the loaded columns whose value changed since the snapshot
+     *
+     * @param object   the model to read
+     * @param snapshot its values when it was read
+     * @param values   the destination
+     * @return values
+     */
+    ContentValues changes(Object object, Object[] snapshot, ContentValues values) {
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] == NOT_LOADED) continue;
+            Object current = columns.get(i).get(object);
+            if (current == null ? snapshot[i] != null : !current.equals(snapshot[i]))
+                columns.get(i).put(object, values);
+        }
+        return values;
+    }
+
+    /**
+     * Mark the current values of the loaded columns as stored
+     */
+    void commit(Object object, Object[] snapshot) {
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] != NOT_LOADED)
+                snapshot[i] = columns.get(i).get(object);
+        }
+    }
+
+    /**
+     * @return the value of a column when the snapshot was taken or <b>null</b> if it was not loaded
+     */
+    Object original(Object[] snapshot, String column) {
+        Attribute attribute = byName.get(column);
+        int index = attribute == null ? -1 : columns.indexOf(attribute);
+        if (index < 0 || snapshot[index] == NOT_LOADED) return null;
+        return snapshot[index];
+    }
+
+    /**
+     * Resolve cursor column indexes, the last layout is kept since every row of a query share it
+     */
+    private Binding bind(Cursor cursor) {
+        String[] names = cursor.getColumnNames();
+        Binding current = binding;
+        if (current != null && (current.names == names || Arrays.equals(current.names, names)))
+            return current;
+
+        List<Attribute> targets = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            Attribute attribute = byName.get(names[i]);
+            if (attribute == null || attribute.typeCode == TYPE_OTHER) continue;
+            targets.add(attribute);
+            indexes.add(i);
+        }
+        current = new Binding(names, targets.toArray(new Attribute[targets.size()]), new int[indexes.size()]);
+        for (int i = 0; i < current.indexes.length; i++) {
+            current.indexes[i] = indexes.get(i);
+        }
+        current.loaded = new boolean[columns.size()];
+        for (int i = 0; i < current.loaded.length; i++) {
+            current.loaded[i] = targets.contains(columns.get(i));
+        }
+        if (mapper != null) {
+            String[] columns = mapper.getColumns();
+            current.mapperIndexes = new int[columns.length];
+            List<String> cursorNames = Arrays.asList(names);
+            for (int i = 0; i < columns.length; i++) {
+                current.mapperIndexes[i] = cursorNames.indexOf(columns[i]);
+            }
+        }
+        binding = current;
+        return current;
+    }
+
+    private static class Binding {
+        private final String[] names;
+        private final Attribute[] targets;
+        private final int[] indexes;
+        private int[] mapperIndexes;
+        private boolean[] loaded;
+
+        private Binding(String[] names, Attribute[] targets, int[] indexes) {
+            this.names = names;
+            this.targets = targets;
+            this.indexes = indexes;
+        }
+    }
+
+    /**
+     * A stored field of a model
+     */
+    public static final class Attribute {
+        private final Field field;
+        private final String name;
+        private final int typeCode;
+        private final corp.ny.com.rufus.database.annotation.Column column;
+        private final corp.ny.com.rufus.database.annotation.Constraint constraint;
+
+        private Attribute(Field field) {
+            this.field = field;
+            this.name = field.getName();
+            this.typeCode = typeCode(field.getType());
+            this.column = field.getAnnotation(corp.ny.com.rufus.database.annotation.Column.class);
+            this.constraint = field.getAnnotation(corp.ny.com.rufus.database.annotation.Constraint.class);
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getTypeCode() {
+            return typeCode;
+        }
+
+        public corp.ny.com.rufus.database.annotation.Column getColumn() {
+            return column;
+        }
+
+        public corp.ny.com.rufus.database.annotation.Constraint getConstraint() {
+            return constraint;
+        }
+
+        /**
+         * @param object the model to read
+         * @return the field value
+         */
+        public Object get(Object object) {
+            try {
+                return field.get(object);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Read a cursor column into the field, a <b>NULL</b> column reset the field to its default value
+         */
+        void read(Object object, Cursor cursor, int index) {
+            try {
+                boolean isNull = cursor.isNull(index);
+                switch (typeCode) {
+                    case TYPE_STRING:
+                        field.set(object, isNull ? null : cursor.getString(index));
+                        break;
+                    case TYPE_INT:
+                        field.setInt(object, isNull ? 0 : cursor.getInt(index));
+                        break;
+                    case TYPE_LONG:
+                        field.setLong(object, isNull ? 0L : cursor.getLong(index));
+                        break;
+                    case TYPE_SHORT:
+                        field.setShort(object, isNull ? 0 : cursor.getShort(index));
+                        break;
+                    case TYPE_BYTE:
+                        field.setByte(object, isNull ? 0 : (byte) cursor.getInt(index));
+                        break;
+                    case TYPE_BOOLEAN:
+                        field.setBoolean(object, !isNull && cursor.getInt(index) == 1);
+                        break;
+                    case TYPE_DOUBLE:
+                        field.setDouble(object, isNull ? 0d : cursor.getDouble(index));
+                        break;
+                    case TYPE_FLOAT:
+                        field.setFloat(object, isNull ? 0f : cursor.getFloat(index));
+                        break;
+                }
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Put field value into sql query parameter
+         * <br>an auto increment column holding its default value is skipped so the database generate it
+         */
+        void put(Object object, ContentValues values) {
+            try {
+                switch (typeCode) {
+                    case TYPE_STRING:
+                        values.put(name, (String) field.get(object));
+                        break;
+                    case TYPE_BOOLEAN:
+                        values.put(name, field.getBoolean(object));
+                        break;
+                    case TYPE_BYTE:
+                        values.put(name, field.getByte(object));
+                        break;
+                    case TYPE_INT:
+                        int intValue = field.getInt(object);
+                        if (!isGenerated(intValue == 0)) values.put(name, intValue);
+                        break;
+                    case TYPE_LONG:
+                        long longValue = field.getLong(object);
+                        if (!isGenerated(longValue == 0L)) values.put(name, longValue);
+                        break;
+                    case TYPE_SHORT:
+                        short shortValue = field.getShort(object);
+                        if (!isGenerated(shortValue == 0)) values.put(name, shortValue);
+                        break;
+                    case TYPE_DOUBLE:
+                        double doubleValue = field.getDouble(object);
+                        if (!isGenerated(doubleValue == 0d)) values.put(name, doubleValue);
+                        break;
+                    case TYPE_FLOAT:
+                        float floatValue = field.getFloat(object);
+                        if (!isGenerated(floatValue == 0f)) values.put(name, floatValue);
+                        break;
+                }
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Bind field value to a compiled statement with primitive accessors
+         * <br>an auto increment column holding its default value is bound to <b>NULL</b> so the database generate it
+         */
+        void bind(Object object, SQLiteStatement statement, int index) {
+            try {
+                switch (typeCode) {
+                    case TYPE_STRING:
+                        String value = (String) field.get(object);
+                        if (value == null) statement.bindNull(index);
+                        else statement.bindString(index, value);
+                        break;
+                    case TYPE_BOOLEAN:
+                        statement.bindLong(index, field.getBoolean(object) ? 1 : 0);
+                        break;
+                    case TYPE_INT:
+                    case TYPE_LONG:
+                    case TYPE_SHORT:
+                    case TYPE_BYTE:
+                        long longValue = field.getLong(object);
+                        if (isGenerated(longValue == 0L)) statement.bindNull(index);
+                        else statement.bindLong(index, longValue);
+                        break;
+                    case TYPE_DOUBLE:
+                    case TYPE_FLOAT:
+                        double doubleValue = field.getDouble(object);
+                        if (isGenerated(doubleValue == 0d)) statement.bindNull(index);
+                        else statement.bindDouble(index, doubleValue);
+                        break;
+                    default:
+                        statement.bindNull(index);
+                }
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * @param isDefault true if the field hold the default value of its type
+         * @return true if the value should be left to the database
+         */
+        boolean isGenerated(boolean isDefault) {
+            return isDefault && column != null && column.increment();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package corp.ny.com.rufus.database.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark a transient field receiving the model referenced by a foreign key of this model
+ * <br>The foreign key field must carry a {@link Constraint}, its <b>references</b> column is matched
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * &#64;Column
+ * &#64;Constraint(references = "id", onTable = "User")
+ * private int senderId;
+ * &#64;BelongsTo(foreignKey = "senderId")
+ * private transient User sender;
+ * </pre></blockquote>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface BelongsTo {
+    String foreignKey();
+}
@@ -18,4 +18,5 @@ public @interface Column {
     String defaultString() default "";
     int defaultInt() default 0;
     boolean signed() default false;
+    boolean searchable() default false;
 }
@@ -0,0 +1,22 @@
+package corp.ny.com.rufus.database.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark a transient list field receiving the models whose foreign key reference this model
+ * <br>The foreign key field of the related model must carry a {@link Constraint}
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * &#64;HasMany(foreignKey = "receiverId")
+ * private transient ArrayList&lt;Message&gt; received;
+ * </pre></blockquote>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface HasMany {
+    String foreignKey();
+}
@@ -0,0 +1,24 @@
+package corp.ny.com.rufus.database.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declare a secondary index
+ * <br>On a field the index covers that column unless {@link #columns()} is given, on a class
+ * {@link #columns()} is required. Use {@link Indexes} to declare several indexes on a class
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.FIELD})
+public @interface Index {
+    String name() default "";
+    String[] columns() default {};
+    boolean unique() default false;
+
+    /**
+     * @return the condition of a partial index, it needs <b>API 21</b> see {@link corp.ny.com.rufus.database.Index#where(String)}
+     */
+    String where() default "";
+}
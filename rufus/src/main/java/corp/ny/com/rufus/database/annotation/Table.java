@@ -8,4 +8,8 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 public @interface Table {
+    /**
+     * @return the name of the {@link corp.ny.com.rufus.database.Database} holding the table, empty for the default one
+     */
+    String database() default "";
 }
@@ -0,0 +1,269 @@
+package corp.ny.com.rufus.system;
+
+import corp.ny.com.rufus.utils.ManifestReader;
+
+/**
+ * Settings of the database and connection tuning applied when it is opened
+ * <br>Every value can be declared in the AndroidManifest.xml as a meta-data, a value of <b>0</b> or <b>null</b>
+ * keeps the SQLite default. The meta-data are read once, a configuration can also be built in code and given
+ * to {@link RufusApp#init(android.content.Context, DatabaseConfig)}
+ * <br>The pragmas are applied on the primary connection, which runs every write. Android gives no hook on the
+ * read connections it opens with write-ahead logging, they keep the SQLite default cache and memory mapping
+ * <p> <b>example</b><br>
+ * <blockquote>
+ * <pre>
+ * &lt;meta-data android:name="DATABASE" android:value="sample.db" /&gt;
+ * &lt;meta-data android:name="VERSION" android:value="6" /&gt;
+ * &lt;meta-data android:name="FOREIGN_KEY_CONSTRAINTS_ENABLED" android:value="true" /&gt;
+ * &lt;meta-data android:name="WRITE_AHEAD_LOGGING" android:value="true" /&gt;
+ * &lt;meta-data android:name="PAGE_SIZE" android:value="4096" /&gt;
+ * &lt;meta-data android:name="CACHE_SIZE" android:value="-2000" /&gt;
+ * &lt;meta-data android:name="SYNCHRONOUS" android:value="NORMAL" /&gt;
+ * &lt;meta-data android:name="MMAP_SIZE" android:value="33554432" /&gt;
+ * &lt;meta-data android:name="JOURNAL_SIZE_LIMIT" android:value="1048576" /&gt;
+ * &lt;meta-data android:name="STATEMENT_CACHE_SIZE" android:value="50" /&gt;
+ * &lt;meta-data android:name="READER_POOL_SIZE" android:value="4" /&gt;
+ * &lt;meta-data android:name="DEFERRED_INIT" android:value="true" /&gt;
+ * &lt;meta-data android:name="SLOW_QUERY_MILLIS" android:value="100" /&gt;
+ * </pre></blockquote>
+ */
+public class DatabaseConfig {
+    public static final String DATABASE = "DATABASE";
+    public static final String VERSION = "VERSION";
+    public static final String FOREIGN_KEY_CONSTRAINTS_ENABLED = "FOREIGN_KEY_CONSTRAINTS_ENABLED";
+    public static final String WRITE_AHEAD_LOGGING = "WRITE_AHEAD_LOGGING";
+    public static final String PAGE_SIZE = "PAGE_SIZE";
+    public static final String CACHE_SIZE = "CACHE_SIZE";
+    public static final String SYNCHRONOUS = "SYNCHRONOUS";
+    public static final String MMAP_SIZE = "MMAP_SIZE";
+    public static final String JOURNAL_SIZE_LIMIT = "JOURNAL_SIZE_LIMIT";
+    public static final String STATEMENT_CACHE_SIZE = "STATEMENT_CACHE_SIZE";
+    public static final String READER_POOL_SIZE = "READER_POOL_SIZE";
+    public static final String DEFERRED_INIT = "DEFERRED_INIT";
+    public static final String SLOW_QUERY_MILLIS = "SLOW_QUERY_MILLIS";
+
+    private String databaseName = null;
+    private int version = 1;
+    private boolean foreignKeys = false;
+    private boolean writeAheadLogging = true;
+    private int pageSize = 0;
+    private int cacheSize = 0;
+    private String synchronous = null;
+    private long mmapSize = 0;
+    private long journalSizeLimit = 0;
+    private int statementCacheSize = 0;
+    private int readerPoolSize = 2;
+    private boolean deferredInit = false;
+    private int slowQueryMillis = 0;
+
+    /**
+     * Read the configuration declared in the manifest
+     *
+     * @return the configuration, missing entries keep their default value
+     */
+    public static DatabaseConfig fromManifest() {
+        DatabaseConfig config = new DatabaseConfig();
+        return config.databaseName(ManifestReader.getMetadataString(DATABASE))
+                .version(ManifestReader.getMetadataInt(VERSION, config.version))
+                .foreignKeys(ManifestReader.getMetadataBoolean(FOREIGN_KEY_CONSTRAINTS_ENABLED, config.foreignKeys))
+                .writeAheadLogging(ManifestReader.getMetadataBoolean(WRITE_AHEAD_LOGGING, config.writeAheadLogging))
+                .pageSize(ManifestReader.getMetadataInt(PAGE_SIZE, config.pageSize))
+                .cacheSize(ManifestReader.getMetadataInt(CACHE_SIZE, config.cacheSize))
+                .synchronous(ManifestReader.getMetadataString(SYNCHRONOUS))
+                .mmapSize(ManifestReader.getMetadataLong(MMAP_SIZE, config.mmapSize))
+                .journalSizeLimit(ManifestReader.getMetadataLong(JOURNAL_SIZE_LIMIT, config.journalSizeLimit))
+                .statementCacheSize(ManifestReader.getMetadataInt(STATEMENT_CACHE_SIZE, config.statementCacheSize))
+                .readerPoolSize(ManifestReader.getMetadataInt(READER_POOL_SIZE, config.readerPoolSize))
+                .deferredInit(ManifestReader.getMetadataBoolean(DEFERRED_INIT, config.deferredInit))
+                .slowQueryMillis(ManifestReader.getMetadataInt(SLOW_QUERY_MILLIS, config.slowQueryMillis));
+    }
+
+    /**
+     * Name of the database file, <b>null</b> keeps the database in memory
+     */
+    public DatabaseConfig databaseName(String name) {
+        this.databaseName = name;
+        return this;
+    }
+
+    /**
+     * Version of the schema, increase it to run the migrations
+     */
+    public DatabaseConfig version(int version) {
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * Enforce foreign key constraints, disabled by default like in SQLite
+     */
+    public DatabaseConfig foreignKeys(boolean enabled) {
+        this.foreignKeys = enabled;
+        return this;
+    }
+
+    /**
+     * Let readers run beside the writer, enabled by default
+     */
+    public DatabaseConfig writeAheadLogging(boolean enabled) {
+        this.writeAheadLogging = enabled;
+        return this;
+    }
+
+    /**
+     * Page size in bytes, only applied before the database file is created
+     */
+    public DatabaseConfig pageSize(int bytes) {
+        this.pageSize = bytes;
+        return this;
+    }
+
+    /**
+     * Page cache of the primary connection, a positive value is a number of pages and a negative one a size in KiB
+     */
+    public DatabaseConfig cacheSize(int size) {
+        this.cacheSize = size;
+        return this;
+    }
+
+    /**
+     * Synchronous mode like <b>OFF</b>, <b>NORMAL</b> or <b>FULL</b>, NORMAL is safe with write-ahead logging
+     */
+    public DatabaseConfig synchronous(String mode) {
+        this.synchronous = mode == null || mode.trim().isEmpty() ? null : mode.trim().toUpperCase();
+        return this;
+    }
+
+    /**
+     * Maximum number of bytes of the file read through memory mapping by the primary connection
+     */
+    public DatabaseConfig mmapSize(long bytes) {
+        this.mmapSize = bytes;
+        return this;
+    }
+
+    /**
+     * Size in bytes the write-ahead log or rollback journal is truncated to after a checkpoint
+     */
+    public DatabaseConfig journalSizeLimit(long bytes) {
+        this.journalSizeLimit = bytes;
+        return this;
+    }
+
+    /**
+     * Number of compiled statements kept by each connection, Android accepts up to 100
+     */
+    public DatabaseConfig statementCacheSize(int size) {
+        this.statementCacheSize = size;
+        return this;
+    }
+
+    /**
+     * Number of threads of {@link RufusExecutors#reader()} running asynchronous reads. It does not open
+     * SQLite connections, Android sizes its own pool of read connections once write-ahead logging is enabled
+     */
+    public DatabaseConfig readerPoolSize(int size) {
+        this.readerPoolSize = Math.max(1, size);
+        return this;
+    }
+
+    /**
+     * Do not open the database at startup, it is opened and migrated in the background on the first use
+     * or on {@link RufusApp#warmUp()}. A first use from the main thread waits for the open running on the
+     * writer thread, call warmUp() early so it is already done
+     */
+    public DatabaseConfig deferredInit(boolean deferred) {
+        this.deferredInit = deferred;
+        return this;
+    }
+
+    /**
+     * Log the operations lasting longer with their query plan, see {@link corp.ny.com.rufus.database.Metrics}
+     */
+    public DatabaseConfig slowQueryMillis(int millis) {
+        this.slowQueryMillis = Math.max(0, millis);
+        return this;
+    }
+
+    /**
+     * @return a configuration holding the same values
+     */
+    public DatabaseConfig copy() {
+        return new DatabaseConfig()
+                .databaseName(databaseName)
+                .version(version)
+                .foreignKeys(foreignKeys)
+                .writeAheadLogging(writeAheadLogging)
+                .pageSize(pageSize)
+                .cacheSize(cacheSize)
+                .synchronous(synchronous)
+                .mmapSize(mmapSize)
+                .journalSizeLimit(journalSizeLimit)
+                .statementCacheSize(statementCacheSize)
+                .readerPoolSize(readerPoolSize)
+                .deferredInit(deferredInit)
+                .slowQueryMillis(slowQueryMillis);
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isForeignKeys() {
+        return foreignKeys;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public long getJournalSizeLimit() {
+        return journalSizeLimit;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public int getReaderPoolSize() {
+        return readerPoolSize;
+    }
+
+    public boolean isDeferredInit() {
+        return deferredInit;
+    }
+
+    public int getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("database=%s, version=%s, foreign_keys=%s, wal=%s, page_size=%s, cache_size=%s, synchronous=%s, " +
+                        "mmap_size=%s, journal_size_limit=%s, statements=%s, readers=%s, deferred=%s, " +
+                        "slow_query=%s",
+                databaseName, version, foreignKeys, writeAheadLogging, pageSize, cacheSize, synchronous,
+                mmapSize, journalSizeLimit, statementCacheSize, readerPoolSize, deferredInit,
+                slowQueryMillis);
+    }
+}
@@ -4,13 +4,11 @@ import android.app.Application;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.concurrent.Future;
 
-import corp.ny.com.rufus.database.Migrations;
+import corp.ny.com.rufus.database.Database;
+import corp.ny.com.rufus.database.Metrics;
 import corp.ny.com.rufus.database.Schema;
-import corp.ny.com.rufus.utils.ManifestReader;
 
 
 /**
@@ -22,8 +20,7 @@ import corp.ny.com.rufus.utils.ManifestReader;
 public class RufusApp extends Application {
 
     private static Context mContext;
-    private static Migrations mHandler = null;
-    private static SQLiteDatabase mDb = null;
+    private static DatabaseConfig mConfig;
     private static RufusApp mInstance;
     private static TableBuilder tableBuilder;
 
@@ -40,7 +37,18 @@ public class RufusApp extends Application {
     }
 
     public static void init(Context context) {
+        init(context, null);
+    }
+
+    /**
+     * Initialize with a configuration built in code instead of the manifest meta-data
+     *
+     * @param context the application context
+     * @param config  the configuration, <b>null</b> reads it from the manifest
+     */
+    public static void init(Context context, DatabaseConfig config) {
         mContext = context;
+        mConfig = config;
         mInstance = new RufusApp();
         mInstance.onCreate();
     }
@@ -49,32 +57,88 @@ public class RufusApp extends Application {
         return mInstance;
     }
 
+    /**
+     * The connection is opened once, every thread then share it
+     * <br>With write-ahead logging Android keeps a pool of connections behind it so reads do not wait for a write.
+     * The first caller opens and migrates the database, if {@link #warmUp()} is already opening it the caller
+     * waits for the end of the open
+     *
+     * @return the default database
+     */
     public static SQLiteDatabase getDataBaseInstance() {
-        // No need to close last data because getWritableDatabase do it
-        if (mDb == null) {
-            mDb = mHandler.getWritableDatabase();
-        }
-        return mDb;
+        return Database.getDefault().getWritableDatabase();
+    }
+
+    /**
+     * Open and migrate the default database on the writer thread without waiting
+     * <p> <b>example</b><br>
+     * <blockquote>
+     * <pre>
+     * &lt;meta-data android:name="DEFERRED_INIT" android:value="true" /&gt;
+     * ...
+     * RufusApp.warmUp(); // in the splash screen
+     * </pre></blockquote>
+     *
+     * @return the open in progress
+     */
+    public static Future<SQLiteDatabase> warmUp() {
+        return Database.getDefault().warmUp();
+    }
+
+    /**
+     * @return true once the default database is opened and migrated
+     */
+    public static boolean isReady() {
+        return Database.getDefault().isReady();
     }
 
+    /**
+     * @return milliseconds between the initialization and the end of the first open, -1 while it is not ready
+     */
+    public static long getTimeToReady() {
+        return Database.getDefault().getTimeToReady();
+    }
+
+    public static DatabaseConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * Replace the configuration without opening anything, it lets unit tests run without PackageManager
+     *
+     * @param config the configuration
+     */
+    public static void setConfig(DatabaseConfig config) {
+        mConfig = config;
+    }
+
+    /**
+     * Register the configuration, the database is opened right away unless {@link DatabaseConfig#isDeferredInit()}
+     */
     @Override
     public void onCreate() {
         super.onCreate();
-        mHandler = new Migrations(mContext,
-                ManifestReader.getMetadataString("DATABASE"),
-                null, ManifestReader.getMetadataInt("VERSION"));
-        if (tableBuilder!=null)
-            tableBuilder.build(mHandler.getWritableDatabase());
+        if (mConfig == null)
+            mConfig = DatabaseConfig.fromManifest();
+        RufusExecutors.setReaderPoolSize(mConfig.getReaderPoolSize());
+        if (mConfig.getSlowQueryMillis() > 0)
+            Metrics.setSlowQueryThreshold(mConfig.getSlowQueryMillis());
+        Database.initDefault(mContext, mConfig);
+        if (tableBuilder != null && !mConfig.isDeferredInit())
+            tableBuilder.build(getDataBaseInstance());
     }
 
     public static void addOnUpgradeSchema(int version, Schema... schemas){
-        mHandler.add(new ArrayList<>(Arrays.asList(schemas)),version);
+        Database.getDefault().addOnUpgradeSchema(version, schemas);
     }
 
 
     @Override
     public void onTerminate() {
         getDataBaseInstance().close();
+        for (Database database : Database.getRegistered()) {
+            database.close();
+        }
         super.onTerminate();
     }
 
@@ -0,0 +1,135 @@
+package corp.ny.com.rufus.system;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background threads used by the asynchronous model API
+ * <br>Every write goes through a single writer thread so they are serialized without fighting for the
+ * database lock, reads are spread over a small pool and can run beside the writer once write-ahead
+ * logging is enabled
+ */
+public final class RufusExecutors {
+    private static final Object lock = new Object();
+    private static ExecutorService writer;
+    private static ExecutorService reader;
+    private static ScheduledExecutorService scheduler;
+    private static Handler mainHandler;
+    private static int readerPoolSize = 2;
+
+    private RufusExecutors() {
+    }
+
+    /**
+     * @return the single thread executor running every write
+     */
+    public static ExecutorService writer() {
+        synchronized (lock) {
+            if (writer == null)
+                writer = Executors.newSingleThreadExecutor(new DbThreadFactory("rufus-writer"));
+            return writer;
+        }
+    }
+
+    /**
+     * @return the pool running reads
+     */
+    public static ExecutorService reader() {
+        synchronized (lock) {
+            if (reader == null)
+                reader = Executors.newFixedThreadPool(readerPoolSize, new DbThreadFactory("rufus-reader"));
+            return reader;
+        }
+    }
+
+    /**
+     * @return the single thread executor running delayed tasks like debounced query refresh, it must only hand work
+     * over to {@link #reader()} or {@link #writer()}
+     */
+    public static ScheduledExecutorService scheduler() {
+        synchronized (lock) {
+            if (scheduler == null)
+                scheduler = Executors.newSingleThreadScheduledExecutor(new DbThreadFactory("rufus-scheduler"));
+            return scheduler;
+        }
+    }
+
+    /**
+     * @param name the name of the thread
+     * @return a new single thread executor running at background priority, the caller shuts it down
+     */
+    public static ExecutorService newSingleThreadExecutor(String name) {
+        return Executors.newSingleThreadExecutor(new DbThreadFactory(name));
+    }
+
+    /**
+     * Define the number of reader threads, it takes effect the next time the pool is created
+     *
+     * @param size number of threads
+     */
+    public static void setReaderPoolSize(int size) {
+        synchronized (lock) {
+            readerPoolSize = Math.max(1, size);
+        }
+    }
+
+    public static int getReaderPoolSize() {
+        synchronized (lock) {
+            return readerPoolSize;
+        }
+    }
+
+    /**
+     * Run a task on the main thread
+     *
+     * @param task the task
+     */
+    public static void postToMain(Runnable task) {
+        synchronized (lock) {
+            if (mainHandler == null)
+                mainHandler = new Handler(Looper.getMainLooper());
+        }
+        mainHandler.post(task);
+    }
+
+    /**
+     * Stop the background threads, pending tasks are still executed
+     */
+    public static void shutdown() {
+        synchronized (lock) {
+            if (writer != null) writer.shutdown();
+            if (reader != null) reader.shutdown();
+            if (scheduler != null) scheduler.shutdown();
+            writer = null;
+            reader = null;
+            scheduler = null;
+        }
+    }
+
+    private static class DbThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DbThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, String.format("%s-%s", name, count.incrementAndGet()));
+        }
+    }
+}
@@ -7,6 +7,10 @@ import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+/**
+ * Initialize Rufus before the application, with <b>DEFERRED_INIT</b> it only registers the configuration and
+ * the database is opened on the first use or on {@link RufusApp#warmUp()}
+ */
 public class RufusInitProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
@@ -1,54 +1,95 @@
 package corp.ny.com.rufus.utils;
 
+import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.os.Bundle;
 
 import corp.ny.com.rufus.system.RufusApp;
 
 /**
  * Created by Yann Yvan CEO of N.Y. Corp. on 07/05/18.
+ * <br>The meta-data of the application are read from the PackageManager once and kept for the life of the process
  */
 public class ManifestReader {
-    public static String getMetadataString(String name) {
-        try {
-            ApplicationInfo appInfo = RufusApp.getContext().getPackageManager().getApplicationInfo(
-                    RufusApp.getContext().getPackageName(), PackageManager.GET_META_DATA);
-            if (appInfo.metaData != null) {
-                return appInfo.metaData.getString(name);
+    private static final Object lock = new Object();
+    private static Bundle metaData;
+    private static boolean loaded = false;
+
+    /**
+     * @return the meta-data of the application or <b>null</b> if there is none or no context yet
+     */
+    private static Bundle getMetaData() {
+        synchronized (lock) {
+            if (loaded) return metaData;
+            Context context = RufusApp.getContext();
+            // without context, like in unit tests, every entry has its default value
+            if (context == null) return null;
+            try {
+                ApplicationInfo appInfo = context.getPackageManager().getApplicationInfo(
+                        context.getPackageName(), PackageManager.GET_META_DATA);
+                metaData = appInfo.metaData;
+            } catch (PackageManager.NameNotFoundException e) {
+                // if we can’t find it in the manifest, every entry has its default value
             }
-        } catch (PackageManager.NameNotFoundException e) {
-            // if we can’t find it in the manifest, just return null
+            loaded = true;
+            return metaData;
+        }
+    }
+
+    /**
+     * Forget the meta-data read so far, the next call reads them again
+     */
+    public static void reset() {
+        synchronized (lock) {
+            metaData = null;
+            loaded = false;
         }
+    }
 
-        return null;
+    public static String getMetadataString(String name) {
+        Bundle metaData = getMetaData();
+        return metaData == null ? null : metaData.getString(name);
     }
 
     public static int getMetadataInt(String name) {
-        try {
-            ApplicationInfo appInfo = RufusApp.getContext().getPackageManager().getApplicationInfo(
-                    RufusApp.getContext().getPackageName(), PackageManager.GET_META_DATA);
-            if (appInfo.metaData != null) {
-                return appInfo.metaData.getInt(name, 1);
-            }
-        } catch (PackageManager.NameNotFoundException e) {
-            // if we can’t find it in the manifest, just return null
-        }
+        return getMetadataInt(name, 1);
+    }
 
-        return 1;
+    public static int getMetadataInt(String name, int defaultValue) {
+        Bundle metaData = getMetaData();
+        return metaData == null ? defaultValue : metaData.getInt(name, defaultValue);
     }
 
-    public static boolean getMetadataBoolean(String name) {
-        try {
-            ApplicationInfo appInfo = RufusApp.getContext().getPackageManager().getApplicationInfo(
-                    RufusApp.getContext().getPackageName(), PackageManager.GET_META_DATA);
-            if (appInfo.metaData != null) {
-                return appInfo.metaData.getBoolean(name, false);
+    /**
+     * Read a number that may not fit in an int, like a size in bytes
+     * <br>The manifest stores a value above 2147483647 as a float, it can also be given as a string resource
+     *
+     * @param name         the meta-data name
+     * @param defaultValue returned when the entry is missing or is not a number
+     * @return the value
+     */
+    public static long getMetadataLong(String name, long defaultValue) {
+        Bundle metaData = getMetaData();
+        Object value = metaData == null ? null : metaData.get(name);
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof String) {
+            try {
+                return Long.parseLong(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return defaultValue;
             }
-        } catch (PackageManager.NameNotFoundException e) {
-            // if we can’t find it in the manifest, just return null
         }
+        return defaultValue;
+    }
+
+    public static boolean getMetadataBoolean(String name) {
+        return getMetadataBoolean(name, false);
+    }
 
-        return false;
+    public static boolean getMetadataBoolean(String name, boolean defaultValue) {
+        Bundle metaData = getMetaData();
+        return metaData == null ? defaultValue : metaData.getBoolean(name, defaultValue);
     }
 
 }
@@ -0,0 +1,107 @@
+package corp.ny.com.rufus;
+
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import corp.ny.com.rufus.database.AsyncModel;
+import corp.ny.com.rufus.database.BatchInsert;
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class AsyncModelUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("async.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+    }
+
+    @Test
+    public void resultIsDeliveredOnMainThread() throws Exception {
+        Recorder<Memo> saved = new Recorder<>();
+        Future<Memo> future = new Memo("async", 1).async().save(saved);
+        Memo memo = future.get();
+        assertNotNull(memo);
+        //the callback is posted, it has not run on the writer thread
+        assertNull(saved.thread);
+
+        ShadowLooper.idleMainLooper();
+        assertSame(Looper.getMainLooper().getThread(), saved.thread);
+        assertSame(memo, saved.result);
+
+        Recorder<Memo> found = new Recorder<>();
+        new Memo().async().find(memo.getId(), found).get();
+        ShadowLooper.idleMainLooper();
+        assertSame(Looper.getMainLooper().getThread(), found.thread);
+        assertEquals("async", found.result.getBody());
+    }
+
+    @Test
+    public void errorIsDeliveredOnMainThread() throws Exception {
+        Recorder<BatchInsert.Report> failed = new Recorder<>();
+        Future<BatchInsert.Report> future = new Memo().async().insert(null, failed);
+        try {
+            future.get();
+            fail("the error was swallowed");
+        } catch (ExecutionException expected) {
+        }
+        ShadowLooper.idleMainLooper();
+        assertSame(Looper.getMainLooper().getThread(), failed.thread);
+        assertNotNull(failed.error);
+    }
+
+    @Test
+    public void pendingClausesAreTakenWhenQueued() throws Exception {
+        RufusApp.getDataBaseInstance().execSQL("DELETE FROM Memo");
+        new Memo("kept", 1).save();
+        new Memo("skipped", 2).save();
+        Memo memo = new Memo();
+        memo.where("body", "kept");
+        Future<ArrayList<Memo>> future = memo.async().get(null);
+        //the chain moved to the background query, the model is clean again
+        assertEquals(new Memo().count(), memo.get().size());
+        ArrayList<Memo> found = future.get();
+        assertEquals(1, found.size());
+        assertEquals("kept", found.get(0).getBody());
+    }
+
+    private static class Recorder<R> implements AsyncModel.Callback<R> {
+        private Thread thread;
+        private R result;
+        private Throwable error;
+
+        @Override
+        public void onSuccess(R result) {
+            thread = Thread.currentThread();
+            this.result = result;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            thread = Thread.currentThread();
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package corp.ny.com.rufus;
+
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import corp.ny.com.rufus.database.BatchInsert;
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BatchInsertUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("batch.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        RufusApp.getDataBaseInstance().execSQL("DELETE FROM Memo");
+    }
+
+    @Test
+    public void everyChunkIsReported() {
+        BatchInsert.Report report = batch().execute(memos(1, 2, 3, 4, 5));
+
+        assertEquals(5, new Memo().count());
+        assertEquals(5, report.getRows());
+        List<Integer> rows = new ArrayList<>();
+        for (BatchInsert.Batch chunk : report.getBatches()) {
+            rows.add(chunk.getRows());
+        }
+        assertEquals(Arrays.asList(2, 2, 1), rows);
+    }
+
+    @Test
+    public void failingChunkIsRolledBackAndEarlierOnesStay() {
+        try {
+            //the fourth row collides with the first one, the second chunk fails
+            batch().execute(memos(1, 2, 3, 1, 5));
+            fail("the conflict was swallowed");
+        } catch (SQLiteConstraintException expected) {
+        }
+        assertEquals(Arrays.asList("memo 1", "memo 2"), bodies());
+    }
+
+    @Test
+    public void outerTransactionRollsBackEveryChunk() {
+        SQLiteDatabase db = RufusApp.getDataBaseInstance();
+        db.beginTransaction();
+        try {
+            batch().execute(memos(1, 2, 3, 1, 5));
+            fail("the conflict was swallowed");
+        } catch (SQLiteConstraintException expected) {
+        } finally {
+            db.endTransaction();
+        }
+        assertEquals(0, new Memo().count());
+    }
+
+    @Test
+    public void ignoredRowDoesNotFailItsChunk() {
+        //the shadow of executeInsert() returns the last rowid even for an ignored row so getInserted() is not checked
+        BatchInsert.Report report = batch().conflict(SQLiteDatabase.CONFLICT_IGNORE).execute(memos(1, 2, 3, 1, 5));
+
+        assertEquals(5, report.getRows());
+        assertEquals(Arrays.asList("memo 1", "memo 2", "memo 3", "memo 5"), bodies());
+    }
+
+    private static BatchInsert<Memo> batch() {
+        return BatchInsert.<Memo>into(RufusApp.getDataBaseInstance(), "Memo", Memo.class).chunkSize(2);
+    }
+
+    private static List<Memo> memos(int... ids) {
+        List<Memo> memos = new ArrayList<>();
+        for (int id : ids) {
+            Memo memo = new Memo(String.format("memo %s", id), id);
+            memo.setId(id);
+            memos.add(memo);
+        }
+        return memos;
+    }
+
+    private static List<String> bodies() {
+        List<String> bodies = new ArrayList<>();
+        for (Memo memo : new Memo().get()) {
+            bodies.add(memo.getBody());
+        }
+        return bodies;
+    }
+}
@@ -0,0 +1,45 @@
+package corp.ny.com.rufus;
+
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.annotation.BelongsTo;
+import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.Constraint;
+import corp.ny.com.rufus.database.annotation.Table;
+
+@Table
+public class Comment extends Model<Comment> {
+    @Column(primary = true, increment = true)
+    private int id;
+    @Column
+    @Constraint(references = "id", onTable = "Note")
+    private int noteId;
+    @BelongsTo(foreignKey = "noteId")
+    private transient Note note;
+
+    public Comment() {
+    }
+
+    public Comment(int noteId) {
+        this.noteId = noteId;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(int noteId) {
+        this.noteId = noteId;
+    }
+
+    public Note getNote() {
+        return note;
+    }
+}
@@ -0,0 +1,38 @@
+package corp.ny.com.rufus;
+
+import org.junit.Test;
+
+import corp.ny.com.rufus.system.DatabaseConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseConfigUnitTest {
+
+    @Test
+    public void defaultsWithoutManifest() {
+        DatabaseConfig config = DatabaseConfig.fromManifest();
+        assertNull(config.getDatabaseName());
+        assertEquals(1, config.getVersion());
+        assertFalse(config.isForeignKeys());
+        assertTrue(config.isWriteAheadLogging());
+        assertFalse(config.isDeferredInit());
+    }
+
+    @Test
+    public void builtInCode() {
+        DatabaseConfig config = new DatabaseConfig()
+                .databaseName("test.db")
+                .version(3)
+                .foreignKeys(true)
+                .synchronous(" normal ")
+                .readerPoolSize(0);
+        assertEquals("test.db", config.getDatabaseName());
+        assertEquals(3, config.getVersion());
+        assertTrue(config.isForeignKeys());
+        assertEquals("NORMAL", config.getSynchronous());
+        assertEquals(1, config.getReaderPoolSize());
+    }
+}
@@ -0,0 +1,96 @@
+package corp.ny.com.rufus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import corp.ny.com.rufus.database.Database;
+import corp.ny.com.rufus.database.FullText;
+import corp.ny.com.rufus.database.InvalidationTracker;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class DatabaseUnitTest {
+    //the registry outlives each test, every test registers its own database
+    private static int registered = 0;
+    private Database archive;
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("default.db"));
+        FullText.forget("Note");
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Note().getSchema());
+        archive = Database.register(String.format("archive_%s", ++registered), new DatabaseConfig());
+    }
+
+    @After
+    public void tearDown() {
+        archive.close();
+    }
+
+    @Test
+    public void fullTextIsKnownPerDatabase() {
+        new Note("hello default").save();
+        archive.getWritableDatabase().execSQL("CREATE TABLE Note (id INTEGER PRIMARY KEY AUTOINCREMENT, body TEXT)");
+        new Note("hello archive").on(archive).save();
+
+        assertEquals("hello default", new Note().search("hello").get(0).getBody());
+        //the archive has no shadow table, it is searched with LIKE
+        Note archived = new Note();
+        archived.setSearchable("body");
+        assertEquals("hello archive", archived.on(archive).search("hello").get(0).getBody());
+    }
+
+    @Test
+    public void writeIsOnlyNotifiedToItsDatabase() throws Exception {
+        SchemaMigrator.migrate(archive.getWritableDatabase(), new Note().getSchema());
+        final List<Set<String>> notified = new ArrayList<>();
+        InvalidationTracker.Observer observer = new InvalidationTracker.Observer() {
+            @Override
+            public Set<String> getTables() {
+                return InvalidationTracker.normalize("Note");
+            }
+
+            @Override
+            public void onInvalidated(Set<String> tables) {
+                notified.add(tables);
+            }
+        };
+        InvalidationTracker.addObserver(observer);
+        try {
+            new Note("archived").on(archive).save();
+            assertTrue(notified.isEmpty());
+            new Note("current").save();
+            assertEquals(1, notified.size());
+        } finally {
+            InvalidationTracker.removeObserver(observer);
+        }
+    }
+
+    @Test
+    public void relationIsReadFromTheOwnerDatabase() throws Exception {
+        SchemaMigrator.migrate(archive.getWritableDatabase(), new Note().getSchema());
+        SchemaMigrator.migrate(archive.getWritableDatabase(), new Comment().getSchema());
+        new Note("in default").save();
+        new Note("in archive").on(archive).save();
+        new Comment(1).on(archive).save();
+
+        List<Comment> comments = new Comment().on(archive).with("note").get();
+        assertEquals(1, comments.size());
+        assertEquals("in archive", comments.get(0).getNote().getBody());
+    }
+}
@@ -0,0 +1,57 @@
+package corp.ny.com.rufus;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class DeferredInitUnitTest {
+
+    @Test
+    public void firstUseFromMainThreadOpensOnWriterThread() {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("deferred.db").deferredInit(true));
+        assertFalse(RufusApp.isReady());
+        ShadowLog.clear();
+
+        assertNotNull(RufusApp.getDataBaseInstance());
+        assertTrue(RufusApp.isReady());
+        assertTrue(openedOn().startsWith("rufus-writer"));
+    }
+
+    @Test
+    public void firstUseFromBackgroundThreadOpensOnIt() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("deferred.db").deferredInit(true));
+        ShadowLog.clear();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RufusApp.getDataBaseInstance();
+            }
+        }, "worker");
+        worker.start();
+        worker.join();
+        assertEquals("worker", openedOn());
+    }
+
+    /**
+     * @return the thread named by the ready log of the database
+     */
+    private static String openedOn() {
+        for (ShadowLog.LogItem item : ShadowLog.getLogsForTag("Rufus")) {
+            if (item.msg.contains(" ready in ")) return item.msg.substring(item.msg.lastIndexOf(" on ") + 4);
+        }
+        throw new AssertionError("The database was not opened");
+    }
+}
@@ -0,0 +1,125 @@
+package corp.ny.com.rufus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.Rufus;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class EntityCacheUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("cache.db"));
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        EntityCache.clearAll();
+    }
+
+    @Test
+    public void rowReadBeforeAnEvictionIsNotCached() {
+        EntityCache cache = EntityCache.forTable("generation", 10);
+        long generation = cache.getGeneration();
+        cache.evict("1");
+        cache.put("1", new Memo("stale"), generation);
+        assertNull(cache.get("1"));
+        cache.put("1", new Memo("fresh"), cache.getGeneration());
+        assertNotNull(cache.get("1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMismatchIsRejected() {
+        EntityCache.forTable("capacity", 10);
+        EntityCache.forTable("capacity", 20);
+    }
+
+    @Test
+    public void rowReadInsideTransactionIsNotCached() {
+        final Memo memo = new Memo("inside").save();
+        final EntityCache cache = new Memo().getCache();
+        cache.clear();
+        Rufus.transaction(new Runnable() {
+            @Override
+            public void run() {
+                assertNotNull(new Memo().find(memo.getId()));
+                assertEquals(0, cache.size());
+            }
+        });
+        assertNotNull(new Memo().find(memo.getId()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void rowCachedDuringTransactionIsDroppedOnCommit() {
+        final Memo memo = new Memo("before").save();
+        final EntityCache cache = new Memo().getCache();
+        Rufus.transaction(new Runnable() {
+            @Override
+            public void run() {
+                Memo edited = new Memo().find(memo.getId());
+                edited.setBody("after");
+                edited.update();
+                // another thread reading the committed row meanwhile
+                cache.put(String.valueOf(memo.getId()), new Memo("before"), cache.getGeneration());
+            }
+        });
+        assertEquals(0, cache.size());
+        assertEquals("after", new Memo().find(memo.getId()).getBody());
+    }
+
+    @Test
+    public void rowReadDuringBulkWriteIsNotCached() throws Exception {
+        final Memo memo = new Memo("before").save();
+        final EntityCache cache = new Memo().getCache();
+        Memo edited = new Memo("after");
+        edited.setId(memo.getId());
+        final List<Memo> rows = new ArrayList<>();
+        rows.add(edited);
+        new Memo().upsert(rowsReadingMeanwhile(rows, memo.getId()));
+        assertEquals("after", new Memo().find(memo.getId()).getBody());
+
+        new Memo().insert(rowsReadingMeanwhile(rows, memo.getId()));
+        assertEquals("after", new Memo().find(memo.getId()).getBody());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * The rows, another thread reads the row <b>id</b> while the first one is written
+     */
+    private static ArrayList<Memo> rowsReadingMeanwhile(final List<Memo> rows, final int id) {
+        return new ArrayList<Memo>(rows) {
+            @Override
+            public Iterator<Memo> iterator() {
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        new Memo().find(id);
+                    }
+                });
+                reader.start();
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.iterator();
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package corp.ny.com.rufus;
+
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.Table;
+
+/**
+ * Model holding nothing but its key
+ */
+@Table
+public class Flag extends Model<Flag> {
+    @Column(primary = true)
+    private int id;
+
+    public Flag() {
+    }
+
+    public Flag(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
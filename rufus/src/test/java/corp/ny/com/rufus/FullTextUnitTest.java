@@ -0,0 +1,70 @@
+package corp.ny.com.rufus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import corp.ny.com.rufus.database.FullText;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class FullTextUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("fulltext.db"));
+        FullText.forget("Note");
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Note().getSchema());
+    }
+
+    @Test
+    public void updatedRowIsIndexedAgain() {
+        Note note = new Note("hello world").save();
+        assertNotNull(note);
+        note.setBody("goodbye world");
+        assertNotNull(note.update());
+        assertTrue(new Note().search("hello").isEmpty());
+        assertEquals(1, new Note().search("goodbye").size());
+        assertEquals(1, new Note().search("world").size());
+    }
+
+    @Test
+    public void deletedRowIsNotFound() {
+        Note note = new Note("hello world").save();
+        new Note("hello there").save();
+        assertTrue(note.delete());
+        assertEquals(1, new Note().search("hello").size());
+        assertTrue(new Note().search("world").isEmpty());
+    }
+
+    @Test
+    public void insertOfExistingRowReplacesItsWords() {
+        Note note = new Note("first draft").save();
+        Note edited = new Note("final text");
+        edited.setId(note.getId());
+        new Note().insert(edited);
+        assertTrue(new Note().search("draft").isEmpty());
+        assertEquals(1, new Note().search("final").size());
+        assertEquals(1, new Note().count());
+    }
+
+    @Test
+    public void upsertOfExistingRow() {
+        Note note = new Note("first draft").save();
+        Note edited = new Note("final text");
+        edited.setId(note.getId());
+        new Note().upsert(edited);
+        assertTrue(new Note().search("draft").isEmpty());
+        assertEquals(1, new Note().search("final").size());
+    }
+}
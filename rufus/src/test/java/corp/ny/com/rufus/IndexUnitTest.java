@@ -0,0 +1,46 @@
+package corp.ny.com.rufus;
+
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+import org.robolectric.util.ReflectionHelpers;
+
+import corp.ny.com.rufus.database.Index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class IndexUnitTest {
+
+    @After
+    public void tearDown() {
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", 27);
+    }
+
+    @Test
+    public void partialIndexKeepsItsCondition() {
+        assertEquals("CREATE INDEX IF NOT EXISTS `Memo_weight_index` ON Memo (`weight`) WHERE weight > 0;",
+                Index.instantiate("Memo", "weight").where("weight > 0").toString());
+    }
+
+    @Test
+    public void partialIndexCoversEveryRowBelowApi21() {
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", 19);
+        assertEquals("CREATE INDEX IF NOT EXISTS `Memo_weight_index` ON Memo (`weight`);",
+                Index.instantiate("Memo", "weight").where("weight > 0").toString());
+        assertFalse(ShadowLog.getLogsForTag("Rufus").isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void partialUniqueIndexIsRefusedBelowApi21() {
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", 19);
+        Index.instantiate("Memo", "body").unique().where("weight > 0").toString();
+    }
+}
@@ -0,0 +1,150 @@
+package corp.ny.com.rufus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import corp.ny.com.rufus.database.AsyncModel;
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.InvalidationTracker;
+import corp.ny.com.rufus.database.ObservableQuery;
+import corp.ny.com.rufus.database.Rufus;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class InvalidationTrackerUnitTest {
+    private final List<Set<String>> notified = new ArrayList<>();
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer() {
+        @Override
+        public Set<String> getTables() {
+            return InvalidationTracker.normalize("Memo");
+        }
+
+        @Override
+        public void onInvalidated(Set<String> tables) {
+            notified.add(tables);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("invalidation.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Flag().getSchema());
+        RufusApp.getDataBaseInstance().execSQL("DELETE FROM Memo");
+        InvalidationTracker.addObserver(observer);
+    }
+
+    @After
+    public void tearDown() {
+        InvalidationTracker.removeObserver(observer);
+    }
+
+    @Test
+    public void onlyObservedTablesAreNotified() {
+        new Flag(1).save();
+        assertTrue(notified.isEmpty());
+        new Memo("outside").save();
+        assertEquals(1, notified.size());
+        assertTrue(notified.get(0).contains("memo"));
+    }
+
+    @Test
+    public void transactionNotifiesOnceCommitted() {
+        Rufus.transaction(new Runnable() {
+            @Override
+            public void run() {
+                new Memo("first").save();
+                Rufus.transaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        new Memo("nested").save();
+                    }
+                });
+                new Flag(2).save();
+                //held until the outermost transaction commits
+                assertTrue(notified.isEmpty());
+            }
+        });
+        assertEquals(1, notified.size());
+        assertTrue(notified.get(0).contains("memo"));
+        assertTrue(notified.get(0).contains("flag"));
+    }
+
+    @Test
+    public void rolledBackTransactionNotifiesNothing() {
+        try {
+            Rufus.transaction(new Runnable() {
+                @Override
+                public void run() {
+                    new Memo("dropped").save();
+                    throw new IllegalStateException("rollback");
+                }
+            });
+            fail("the failure was swallowed");
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(notified.isEmpty());
+        new Memo("after").save();
+        assertEquals(1, notified.size());
+    }
+
+    @Test
+    public void burstOfWritesRerunsTheQueryOnce() throws Exception {
+        final List<ArrayList<Memo>> results = new ArrayList<>();
+        ObservableQuery<Memo> query = new Memo().observe(300, new AsyncModel.Callback<ArrayList<Memo>>() {
+            @Override
+            public void onSuccess(ArrayList<Memo> result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                fail(error.getMessage());
+            }
+        });
+        try {
+            await(results, 1, 5000);
+            assertEquals(0, results.get(0).size());
+
+            new Memo("first").save();
+            new Memo("second").save();
+            new Memo("third").save();
+            await(results, 2, 5000);
+            //a late second run would show up within another debounce delay
+            await(results, 3, 900);
+            assertEquals(2, results.size());
+            assertEquals(3, results.get(1).size());
+        } finally {
+            query.close();
+        }
+    }
+
+    /**
+     * Deliver the main thread messages until the callback received count results or the timeout elapsed
+     */
+    private static void await(List<?> results, int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (results.size() < count && System.currentTimeMillis() < deadline) {
+            ShadowLooper.idleMainLooper();
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package corp.ny.com.rufus;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import corp.ny.com.rufus.database.KeysetPaginator;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class KeysetPaginatorUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("keyset.db"));
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+    }
+
+    @Test
+    public void realKeysAreBoundAsNumbers() {
+        // without declared type the column has no affinity, a key bound as text sorts after every number
+        SQLiteDatabase db = RufusApp.getDataBaseInstance();
+        db.execSQL("DROP TABLE Memo");
+        db.execSQL("CREATE TABLE Memo (id INTEGER PRIMARY KEY AUTOINCREMENT, body TEXT, weight)");
+        for (int i = 0; i < 6; i++) {
+            new Memo("memo " + i, 1 + (i + 1) * 1e-15).save();
+        }
+        KeysetPaginator<Memo> pages = new KeysetPaginator<>(new Memo(), null, "weight DESC", 2);
+        List<Integer> seen = new ArrayList<>();
+        for (ArrayList<Memo> page = pages.next(); !page.isEmpty() && seen.size() < 12; page = pages.next()) {
+            for (Memo memo : page) {
+                seen.add(memo.getId());
+            }
+        }
+        assertEquals(Arrays.asList(6, 5, 4, 3, 2, 1), seen);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingAnchorRowIsRejected() {
+        Memo memo = new Memo("gone", 1).save();
+        memo.delete();
+        new KeysetPaginator<>(new Memo(), null, "weight", 2).afterRow(String.valueOf(memo.getId()));
+    }
+
+    @Test
+    public void missingAnchorRowSortedByIdIsSkipped() {
+        for (int i = 0; i < 4; i++) {
+            new Memo("memo " + i, i).save();
+        }
+        new Memo().find(2).delete();
+        ArrayList<Memo> page = new KeysetPaginator<>(new Memo(), null, "id", 2).afterRow("2").next();
+        assertEquals(2, page.size());
+        assertEquals(3, page.get(0).getId());
+    }
+
+    @Test
+    public void orderOfTheClausesIsUsed() {
+        RufusApp.getDataBaseInstance().execSQL("DELETE FROM Memo");
+        for (int i = 0; i < 5; i++) {
+            new Memo("memo " + i, i % 3).save();
+        }
+        Memo memo = new Memo();
+        memo.setOrderBy("weight DESC");
+        KeysetPaginator<Memo> pages = memo.limit(2).keyset();
+        List<String> seen = new ArrayList<>();
+        for (ArrayList<Memo> page = pages.next(); !page.isEmpty() && seen.size() < 10; page = pages.next()) {
+            assertEquals(true, page.size() <= 2);
+            for (Memo row : page) {
+                seen.add(row.getBody());
+            }
+        }
+        assertEquals(Arrays.asList("memo 2", "memo 1", "memo 4", "memo 0", "memo 3"), seen);
+    }
+}
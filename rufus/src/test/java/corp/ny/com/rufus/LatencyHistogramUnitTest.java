@@ -0,0 +1,48 @@
+package corp.ny.com.rufus;
+
+import org.junit.Test;
+
+import corp.ny.com.rufus.database.LatencyHistogram;
+import corp.ny.com.rufus.database.Metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Latency buckets of {@link LatencyHistogram} and the switches of {@link Metrics}
+ */
+public class LatencyHistogramUnitTest {
+
+    @Test
+    public void percentilesAreBucketBounds() {
+        LatencyHistogram histogram = new LatencyHistogram("SELECT * FROM user WHERE id = ?");
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100000); // 100us
+        }
+        histogram.record(50000000); // 50ms
+        assertEquals(100, histogram.getCount());
+        assertEquals(128, histogram.getPercentileMicros(50));
+        assertEquals(128, histogram.getPercentileMicros(99));
+        assertEquals(65536, histogram.getPercentileMicros(100));
+        assertEquals(50000, histogram.getMaxMicros(), 0.001);
+        assertEquals(599, histogram.getMeanMicros(), 0.001);
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram("SELECT 1");
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(99));
+        assertEquals(0, histogram.getMeanMicros(), 0);
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertFalse(Metrics.isEnabled());
+        Metrics.setSlowQueryThreshold(10);
+        assertTrue(Metrics.isEnabled());
+        Metrics.setSlowQueryThreshold(0);
+        assertFalse(Metrics.isEnabled());
+    }
+}
@@ -0,0 +1,61 @@
+package corp.ny.com.rufus;
+
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowPackageManager;
+
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+import corp.ny.com.rufus.utils.ManifestReader;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ManifestConfigUnitTest {
+    private Bundle metaData;
+
+    @Before
+    public void setUp() {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("manifest.db"));
+        PackageManager packageManager = RuntimeEnvironment.application.getPackageManager();
+        metaData = new Bundle();
+        ShadowPackageManager shadow = Shadow.extract(packageManager);
+        shadow.getInternalMutablePackageInfo(RuntimeEnvironment.application.getPackageName())
+                .applicationInfo.metaData = metaData;
+        ManifestReader.reset();
+    }
+
+    @After
+    public void tearDown() {
+        ManifestReader.reset();
+    }
+
+    @Test
+    public void sizesAboveTwoGigabytesAreKept() {
+        //the manifest compiler stores a decimal above the int range as a float
+        metaData.putFloat(DatabaseConfig.MMAP_SIZE, 4294967296f);
+        metaData.putString(DatabaseConfig.JOURNAL_SIZE_LIMIT, "3000000000");
+        DatabaseConfig config = DatabaseConfig.fromManifest();
+        assertEquals(4294967296L, config.getMmapSize());
+        assertEquals(3000000000L, config.getJournalSizeLimit());
+    }
+
+    @Test
+    public void intSizesAreRead() {
+        metaData.putInt(DatabaseConfig.MMAP_SIZE, 33554432);
+        metaData.putString(DatabaseConfig.JOURNAL_SIZE_LIMIT, "not a size");
+        DatabaseConfig config = DatabaseConfig.fromManifest();
+        assertEquals(33554432L, config.getMmapSize());
+        assertEquals(0, config.getJournalSizeLimit());
+    }
+}
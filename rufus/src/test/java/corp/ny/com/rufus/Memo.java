@@ -0,0 +1,59 @@
+package corp.ny.com.rufus;
+
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.Table;
+
+/**
+ * Model read through the {@link corp.ny.com.rufus.database.EntityCache}
+ */
+@Table
+public class Memo extends Model<Memo> {
+    @Column(primary = true, increment = true)
+    private int id;
+    @Column
+    private String body;
+    @Column
+    private double weight;
+
+    public Memo() {
+    }
+
+    public Memo(String body) {
+        this.body = body;
+    }
+
+    public Memo(String body, double weight) {
+        this.body = body;
+        this.weight = weight;
+    }
+
+    @Override
+    public int getCacheSize() {
+        return 100;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+}
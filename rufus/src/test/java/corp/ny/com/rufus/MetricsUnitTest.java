@@ -0,0 +1,107 @@
+package corp.ny.com.rufus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.LatencyHistogram;
+import corp.ny.com.rufus.database.Metrics;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class MetricsUnitTest {
+    private final List<Metrics.Event> events = new ArrayList<>();
+    private final Metrics.Listener collector = new Metrics.Listener() {
+        @Override
+        public void onOperation(Metrics.Event event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onSlowQuery(Metrics.Event event, List<String> plan) {
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("metrics.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Tag().getSchema());
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setListener(null);
+        Metrics.setHistogramsEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void operationsAreReported() {
+        Metrics.setListener(collector);
+        Memo memo = new Memo("hello").save();
+        assertNotNull(memo);
+        new Memo().find(memo.getId());
+
+        assertTrue(events.size() >= 2);
+        Metrics.Event write = events.get(0);
+        assertEquals(Metrics.Type.UPSERT, write.getType());
+        assertEquals("Memo", write.getTable());
+        assertEquals(1, write.getRows());
+        Metrics.Event read = events.get(events.size() - 1);
+        assertEquals(Metrics.Type.FIND, read.getType());
+        assertEquals("SELECT * FROM Memo WHERE id = ?", read.getShape());
+    }
+
+    @Test
+    public void insertShapeHasOnePlaceholderPerColumn() {
+        Metrics.setListener(collector);
+        new Tag("urgent", 3).save();
+
+        Metrics.Event insert = events.get(0);
+        assertEquals(Metrics.Type.INSERT, insert.getType());
+        assertTrue(insert.getShape(), insert.getShape().endsWith("VALUES (?, ?, ?)"));
+    }
+
+    @Test
+    public void histogramIsKeptPerShape() {
+        Metrics.setHistogramsEnabled(true);
+        new Memo().where("body", "a").get();
+        new Memo().where("body", "b").get();
+        new Memo().whereIn("body", "a", "b").get();
+
+        assertEquals(2, Metrics.getHistograms().size());
+        LatencyHistogram histogram = Metrics.getHistograms().get("SELECT * FROM Memo WHERE `body` = ? ORDER BY id");
+        assertNotNull(Metrics.getHistograms().keySet().toString(), histogram);
+        assertEquals(2, histogram.getCount());
+    }
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        Metrics.setListener(collector);
+        Metrics.setListener(null);
+        assertFalse(Metrics.isEnabled());
+        new Memo("hello").save();
+        new Memo().where("body", "hello").get();
+
+        assertTrue(events.isEmpty());
+        assertTrue(Metrics.getHistograms().isEmpty());
+    }
+}
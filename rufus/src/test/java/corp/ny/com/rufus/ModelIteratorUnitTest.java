@@ -0,0 +1,103 @@
+package corp.ny.com.rufus;
+
+import android.database.Cursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.ModelIterator;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ModelIteratorUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("iterator.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        RufusApp.getDataBaseInstance().execSQL("DELETE FROM Memo");
+        for (int i = 1; i <= 3; i++) {
+            new Memo(String.format("memo %s", i), i).save();
+        }
+    }
+
+    @Test
+    public void cursorIsClosedOnceExhausted() {
+        Cursor cursor = cursor();
+        ModelIterator<Memo> memos = new ModelIterator<>(new Memo(), cursor, false);
+        List<String> bodies = new ArrayList<>();
+        for (Memo memo : memos) {
+            bodies.add(memo.getBody());
+        }
+        assertEquals(Arrays.asList("memo 1", "memo 2", "memo 3"), bodies);
+        assertTrue(cursor.isClosed());
+        assertFalse(memos.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void nextPastTheEndThrows() {
+        ModelIterator<Memo> memos = new ModelIterator<>(new Memo(), cursor(), false);
+        memos.toList();
+        memos.next();
+    }
+
+    @Test
+    public void earlyCloseReleasesTheCursor() {
+        Cursor cursor = cursor();
+        ModelIterator<Memo> memos = new ModelIterator<>(new Memo(), cursor, false);
+        assertEquals("memo 1", memos.next().getBody());
+        memos.close();
+        assertTrue(cursor.isClosed());
+        assertFalse(memos.hasNext());
+        //a second close is a no-op
+        memos.close();
+    }
+
+    @Test
+    public void flyweightRefillsOneInstance() {
+        ModelIterator<Memo> memos = new ModelIterator<>(new Memo(), cursor(), true);
+        Memo first = memos.next();
+        assertEquals("memo 1", first.getBody());
+        Memo second = memos.next();
+        assertSame(first, second);
+        assertEquals("memo 2", second.getBody());
+        memos.close();
+
+        memos = new ModelIterator<>(new Memo(), cursor(), false);
+        assertNotSame(memos.next(), memos.next());
+        memos.close();
+    }
+
+    @Test
+    public void iterateAppliesTheClauses() {
+        ModelIterator<Memo> memos = new Memo().where("weight", 2).iterate();
+        List<Memo> found = memos.toList();
+        assertEquals(1, found.size());
+        assertEquals("memo 2", found.get(0).getBody());
+        assertFalse(memos.hasNext());
+    }
+
+    private static Cursor cursor() {
+        return RufusApp.getDataBaseInstance().rawQuery("SELECT * FROM Memo ORDER BY id", null);
+    }
+}
@@ -0,0 +1,90 @@
+package corp.ny.com.rufus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ModelQueryUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("query.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        for (int i = 1; i <= 5; i++) {
+            new Memo(String.format("memo %s", i), i % 2).save();
+        }
+    }
+
+    @Test
+    public void getReturnsEveryMatch() {
+        assertEquals(5, new Memo().get().size());
+        assertEquals(3, new Memo().where("weight", 1).get().size());
+    }
+
+    @Test
+    public void limitAndOffsetAreAppliedBySqlite() {
+        assertEquals(bodies(2, 3), bodies(new Memo().limit(2).offset(1).get()));
+        assertEquals(bodies(4, 5), bodies(new Memo().offset(3).get()));
+        assertEquals(bodies(3, 5), bodies(new Memo().where("weight", 1).offset(1).get()));
+    }
+
+    @Test
+    public void firstAndLastFollowTheOrder() {
+        assertEquals("memo 1", new Memo().first().getBody());
+        assertEquals("memo 2", new Memo().offset(1).first().getBody());
+        assertEquals("memo 5", new Memo().last().getBody());
+        assertEquals("memo 4", new Memo().where("weight", 0).last().getBody());
+        assertNull(new Memo().where("weight", 3).last());
+    }
+
+    @Test
+    public void lastRejectsAWindow() {
+        Memo memo = new Memo();
+        try {
+            memo.offset(2).last();
+            fail("the offset was ignored");
+        } catch (IllegalStateException expected) {
+        }
+        //the rejected chain is dropped
+        assertEquals("memo 5", memo.last().getBody());
+        try {
+            memo.limit(2).last();
+            fail("the limit was ignored");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static List<String> bodies(int... ids) {
+        List<String> bodies = new ArrayList<>();
+        for (int id : ids) {
+            bodies.add(String.format("memo %s", id));
+        }
+        return bodies;
+    }
+
+    private static List<String> bodies(List<Memo> memos) {
+        List<String> bodies = new ArrayList<>();
+        for (Memo memo : memos) {
+            bodies.add(memo.getBody());
+        }
+        return bodies;
+    }
+}
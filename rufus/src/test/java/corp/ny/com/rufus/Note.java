@@ -0,0 +1,45 @@
+package corp.ny.com.rufus;
+
+import java.util.ArrayList;
+
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.HasMany;
+import corp.ny.com.rufus.database.annotation.Table;
+
+@Table
+public class Note extends Model<Note> {
+    @Column(primary = true, increment = true)
+    private int id;
+    @Column(searchable = true)
+    private String body;
+    @HasMany(foreignKey = "noteId")
+    private transient ArrayList<Comment> comments;
+
+    public Note() {
+    }
+
+    public Note(String body) {
+        this.body = body;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public ArrayList<Comment> getComments() {
+        return comments;
+    }
+}
@@ -0,0 +1,92 @@
+package corp.ny.com.rufus;
+
+import org.junit.Test;
+
+import corp.ny.com.rufus.database.Clause;
+import corp.ny.com.rufus.database.QueryBuilder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class QueryBuilderUnitTest {
+
+    @Test
+    public void valuesAreBound() {
+        QueryBuilder<Object> query = new QueryBuilder<>("Message")
+                .where("receiverId", 1)
+                .where("message", Clause.Comparison.diff, "it's")
+                .where("isOpen", true);
+        assertEquals("SELECT * FROM Message WHERE `receiverId` = ? AND `message` != ? AND `isOpen` = ?", query.toSql());
+        assertArrayEquals(new String[]{"1", "it's", "1"}, query.getArgs());
+    }
+
+    @Test
+    public void sameShapeSameSql() {
+        String first = new QueryBuilder<>("Message").where("id", 1).toSql();
+        String second = new QueryBuilder<>("Message").where("id", 42).toSql();
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void variableArity() {
+        QueryBuilder<Object> query = new QueryBuilder<>("Message")
+                .whereIn("senderId", 1, 2, 3)
+                .whereNotIn("receiverId", 4)
+                .whereBetween("id", 10, 20);
+        assertEquals("SELECT * FROM Message WHERE `senderId` IN (?,?,?) AND `receiverId` NOT IN (?) AND `id` BETWEEN ? AND ?", query.toSql());
+        assertArrayEquals(new String[]{"1", "2", "3", "4", "10", "20"}, query.getArgs());
+    }
+
+    @Test
+    public void nullIsNotBound() {
+        QueryBuilder<Object> query = new QueryBuilder<>("User")
+                .whereNull("phone")
+                .whereNotNull("email");
+        assertEquals("SELECT * FROM User WHERE `phone` IS NULL AND `email` IS NOT NULL", query.toSql());
+        assertEquals(0, query.getArgs().length);
+    }
+
+    @Test
+    public void groupOrderLimitOffset() {
+        QueryBuilder<Object> query = new QueryBuilder<>("Message")
+                .where("receiverId", Clause.Comparison.gte, 5)
+                .groupBy("senderId")
+                .orderBy("id DESC")
+                .limit(10)
+                .offset(30);
+        assertEquals("SELECT * FROM Message WHERE `receiverId` >= ? GROUP BY senderId ORDER BY id DESC LIMIT ? OFFSET ?", query.toSql());
+        assertArrayEquals(new String[]{"5", "10", "30"}, query.getArgs());
+    }
+
+    @Test
+    public void aggregates() {
+        QueryBuilder<Object> query = new QueryBuilder<>("Message")
+                .where("receiverId", 1)
+                .orderBy("id DESC");
+        assertEquals("SELECT COUNT(*) FROM Message WHERE `receiverId` = ?", query.toAggregateSql("COUNT", "*"));
+        assertEquals("SELECT SUM(`senderId`) FROM Message WHERE `receiverId` = ?", query.toAggregateSql("SUM", "senderId"));
+        assertEquals("SELECT EXISTS(SELECT 1 FROM Message WHERE `receiverId` = ?)", query.toExistsSql());
+        assertArrayEquals(new String[]{"1"}, query.getAggregateArgs());
+    }
+
+    @Test
+    public void groupedAndLimitedAggregates() {
+        QueryBuilder<Object> grouped = new QueryBuilder<>("Message").groupBy("senderId");
+        assertEquals("SELECT COUNT(*) FROM (SELECT COUNT(*) AS value FROM Message GROUP BY senderId)", grouped.toAggregateSql("COUNT", "*"));
+        assertEquals("SELECT MAX(value) FROM (SELECT MAX(`id`) AS value FROM Message GROUP BY senderId)", grouped.toAggregateSql("MAX", "id"));
+        assertEquals("SELECT TOTAL(value) / SUM(number) FROM (SELECT SUM(`id`) AS value, COUNT(`id`) AS number FROM Message GROUP BY senderId)", grouped.toAggregateSql("AVG", "id"));
+
+        QueryBuilder<Object> limited = new QueryBuilder<>("Message").orderBy("id DESC").limit(10);
+        assertEquals("SELECT AVG(value) FROM (SELECT `id` AS value FROM Message ORDER BY id DESC LIMIT ?)", limited.toAggregateSql("AVG", "id"));
+        assertArrayEquals(new String[]{"10"}, limited.getAggregateArgs());
+    }
+
+    @Test
+    public void projection() {
+        QueryBuilder<Object> query = new QueryBuilder<>("Message")
+                .select("id", "receiverId", "substr(message, 1, 40) AS message")
+                .where("receiverId", 1);
+        assertEquals("SELECT `id`, `receiverId`, substr(message, 1, 40) AS message FROM Message WHERE `receiverId` = ?", query.toSql());
+        assertEquals("SELECT COUNT(*) FROM Message WHERE `receiverId` = ?", query.toAggregateSql("COUNT", "*"));
+    }
+}
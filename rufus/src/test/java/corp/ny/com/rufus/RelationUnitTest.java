@@ -0,0 +1,114 @@
+package corp.ny.com.rufus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.Metrics;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class RelationUnitTest {
+    private final List<Metrics.Event> events = new ArrayList<>();
+    private final Metrics.Listener collector = new Metrics.Listener() {
+        @Override
+        public void onOperation(Metrics.Event event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onSlowQuery(Metrics.Event event, List<String> plan) {
+        }
+    };
+    private Note first;
+    private Note second;
+    private Note empty;
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("relation.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Note().getSchema());
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Comment().getSchema());
+        RufusApp.getDataBaseInstance().execSQL("DELETE FROM Comment");
+        RufusApp.getDataBaseInstance().execSQL("DELETE FROM Note");
+        first = new Note("first").save();
+        second = new Note("second").save();
+        empty = new Note("empty").save();
+        new Comment(first.getId()).save();
+        new Comment(first.getId()).save();
+        new Comment(second.getId()).save();
+        //a dangling key, foreign keys are not enforced by the test database
+        new Comment(empty.getId() + 100).save();
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setListener(null);
+    }
+
+    @Test
+    public void belongsToIsLoadedWithOneQuery() {
+        Metrics.setListener(collector);
+        List<Comment> comments = new Comment().with("note").get();
+
+        assertEquals(4, comments.size());
+        assertEquals("first", comments.get(0).getNote().getBody());
+        assertEquals("first", comments.get(1).getNote().getBody());
+        assertEquals("second", comments.get(2).getNote().getBody());
+        assertNull(comments.get(3).getNote());
+        assertEquals(1, selectsOn("Note"));
+    }
+
+    @Test
+    public void hasManyIsLoadedWithOneQuery() {
+        Metrics.setListener(collector);
+        List<Note> notes = new Note().with("comments").get();
+
+        assertEquals(3, notes.size());
+        assertEquals(2, notes.get(0).getComments().size());
+        assertEquals(1, notes.get(1).getComments().size());
+        assertTrue(notes.get(2).getComments().isEmpty());
+        assertEquals(1, selectsOn("Comment"));
+    }
+
+    @Test
+    public void relationsOfReadModelsAreLoadedWithOneQuery() {
+        ArrayList<Note> notes = new Note().get();
+        Metrics.setListener(collector);
+        new Note().load(notes, "comments");
+
+        assertEquals(2, notes.get(0).getComments().size());
+        assertEquals(1, selectsOn("Comment"));
+        assertEquals(0, selectsOn("Note"));
+    }
+
+    /**
+     * @return number of queries read from the table, each must be a single IN lookup
+     */
+    private int selectsOn(String table) {
+        int selects = 0;
+        for (Metrics.Event event : events) {
+            if (!event.getTable().equals(table)) continue;
+            assertEquals(Metrics.Type.SELECT, event.getType());
+            assertTrue(event.getShape(), event.getShape().contains(" IN "));
+            selects++;
+        }
+        return selects;
+    }
+}
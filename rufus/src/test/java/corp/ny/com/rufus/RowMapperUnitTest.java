@@ -0,0 +1,84 @@
+package corp.ny.com.rufus;
+
+import android.content.ContentValues;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.RowMapper;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.database.TableMetadata;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * The test sources go through the annotation processor, every @Table model has a generated mapper
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class RowMapperUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("mapper.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        RufusApp.getDataBaseInstance().execSQL("DELETE FROM Memo");
+    }
+
+    @After
+    public void tearDown() {
+        TableMetadata.setMappersEnabled(true);
+    }
+
+    @Test
+    public void generatedMapperIsFound() {
+        RowMapper<Object> mapper = TableMetadata.of(Memo.class).getMapper();
+        assertNotNull(mapper);
+        assertArrayEquals(new String[]{"id", "body", "weight"}, mapper.getBindColumns());
+    }
+
+    @Test
+    public void mapperAndReflectionWriteTheSameValues() {
+        Memo memo = new Memo("mapped", 2.5);
+        memo.setId(4);
+        ContentValues mapped = TableMetadata.of(Memo.class).populate(memo, new ContentValues());
+        TableMetadata.setMappersEnabled(false);
+        ContentValues reflected = TableMetadata.of(Memo.class).populate(memo, new ContentValues());
+        assertEquals(reflected, mapped);
+    }
+
+    @Test
+    public void rowsWrittenByOnePathAreReadByTheOther() {
+        ArrayList<Memo> memos = new ArrayList<>(Arrays.asList(new Memo("first", 1.5), new Memo("second", -3)));
+        new Memo().insert(memos);
+        TableMetadata.setMappersEnabled(false);
+        new Memo("third", 0.25).save();
+        ArrayList<Memo> reflected = new Memo().get();
+
+        TableMetadata.setMappersEnabled(true);
+        EntityCache.clearAll();
+        ArrayList<Memo> mapped = new Memo().get();
+        assertEquals(3, mapped.size());
+        for (int i = 0; i < mapped.size(); i++) {
+            assertEquals(reflected.get(i).getId(), mapped.get(i).getId());
+            assertEquals(reflected.get(i).getBody(), mapped.get(i).getBody());
+            assertEquals(reflected.get(i).getWeight(), mapped.get(i).getWeight(), 0);
+        }
+        assertEquals("second", mapped.get(1).getBody());
+        assertEquals(-3, mapped.get(1).getWeight(), 0);
+    }
+}
@@ -0,0 +1,125 @@
+package corp.ny.com.rufus;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import corp.ny.com.rufus.database.Schema;
+import corp.ny.com.rufus.database.SchemaMigrator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SchemaMigratorUnitTest {
+
+    private Schema users() {
+        Schema table = Schema.instantiate("users");
+        table.increments("id");
+        table.string("name");
+        table.integer("age").nullable();
+        table.index("name").name("users_name");
+        return table;
+    }
+
+    private SchemaMigrator.LiveTable stored() {
+        return new SchemaMigrator.LiveTable()
+                .column("id", "INTEGER", false, null, true)
+                .column("Name", "VARCHAR(60)", true, null, false)
+                .index("users_name", false, "name");
+    }
+
+    @Test
+    public void upToDateTableHasNoStep() {
+        assertTrue(SchemaMigrator.plan(users(), stored().column("age", "INTEGER", false, null, false)).isEmpty());
+    }
+
+    @Test
+    public void newColumnIsAdded() {
+        assertEquals(Arrays.asList("ALTER TABLE users ADD COLUMN `age` INTEGER(10);"),
+                SchemaMigrator.plan(users(), stored()));
+    }
+
+    @Test
+    public void rebuildKeepsTheRows() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE players (`id` INTEGER PRIMARY KEY AUTOINCREMENT, `name` TEXT NOT NULL, `age` TEXT, `nickname` TEXT)");
+        db.execSQL("INSERT INTO players (name, age, nickname) VALUES ('ann', '42', 'a')");
+
+        Schema players = Schema.instantiate("players");
+        players.increments("id");
+        players.string("name");
+        // the type changes, nickname is dropped and score is NOT NULL without default
+        players.integer("age").nullable();
+        players.integer("score");
+        assertTrue(SchemaMigrator.plan(db, players).contains("ALTER TABLE players_rufus_rebuild RENAME TO players;"));
+        SchemaMigrator.migrate(db, players);
+
+        assertEquals(Arrays.asList("id", "name", "age", "score"), columns(db, "players"));
+        Cursor cursor = db.rawQuery("SELECT name, age, typeof(age), score FROM players", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("ann", cursor.getString(0));
+            assertEquals(42, cursor.getInt(1));
+            assertEquals("integer", cursor.getString(2));
+            assertEquals(0, cursor.getInt(3));
+        } finally {
+            cursor.close();
+        }
+        assertTrue(SchemaMigrator.plan(db, players).isEmpty());
+    }
+
+    @Test
+    public void rebuildLeavingOrphansFails() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE teams (`id` INTEGER PRIMARY KEY AUTOINCREMENT)");
+        db.execSQL("CREATE TABLE members (`id` INTEGER PRIMARY KEY AUTOINCREMENT, `teamId` INTEGER NOT NULL)");
+        db.execSQL("INSERT INTO teams (id) VALUES (1)");
+        db.execSQL("INSERT INTO members (teamId) VALUES (1)");
+        db.execSQL("INSERT INTO members (teamId) VALUES (99)");
+
+        Schema members = Schema.instantiate("members");
+        members.increments("id");
+        members.integer("teamId");
+        members.foreign("teamId").references("id").on("teams");
+        try {
+            SchemaMigrator.migrate(db, members);
+            fail("the member of team 99 has no parent");
+        } catch (SQLiteConstraintException e) {
+            assertTrue(e.getMessage().contains("members"));
+        }
+        // rolled back, the table keeps its former definition
+        Cursor cursor = db.rawQuery("PRAGMA foreign_key_list(members)", null);
+        try {
+            assertFalse(cursor.moveToFirst());
+        } finally {
+            cursor.close();
+        }
+        assertEquals(Arrays.asList("id", "teamId"), columns(db, "members"));
+    }
+
+    private static List<String> columns(SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery(String.format("PRAGMA table_info(%s)", table), null);
+        try {
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(cursor.getColumnIndex("name")));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+}
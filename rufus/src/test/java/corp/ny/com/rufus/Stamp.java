@@ -0,0 +1,50 @@
+package corp.ny.com.rufus;
+
+import android.content.ContentValues;
+
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.Table;
+
+/**
+ * Model adding a derived column to the values it writes
+ */
+@Table
+public class Stamp extends Model<Stamp> {
+    @Column(primary = true, increment = true)
+    private int id;
+    @Column
+    private String body;
+    @Column
+    private String stamp;
+
+    public Stamp() {
+    }
+
+    public Stamp(String body) {
+        this.body = body;
+    }
+
+    @Override
+    public ContentValues sqlQueryBuilder(ContentValues query) {
+        super.sqlQueryBuilder(query);
+        query.put("stamp", String.format("written %s", body));
+        return query;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public String getStamp() {
+        return stamp;
+    }
+}
@@ -0,0 +1,32 @@
+package corp.ny.com.rufus;
+
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.annotation.Column;
+import corp.ny.com.rufus.database.annotation.Table;
+
+@Table
+public class Tag extends Model<Tag> {
+    //not a primary key, save() inserts then reads the row back by id
+    @Column
+    private int id;
+    @Column
+    private String name;
+    @Column
+    private int weight;
+
+    public Tag() {
+    }
+
+    public Tag(String name, int weight) {
+        this.name = name;
+        this.weight = weight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,103 @@
+package corp.ny.com.rufus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.FullText;
+import corp.ny.com.rufus.database.Rufus;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class TransactionUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("transaction.db"));
+        FullText.forget("Note");
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Note().getSchema());
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        EntityCache.clearAll();
+    }
+
+    @Test
+    public void failedNestedTransactionOnlyRollsBackItself() {
+        Rufus.transaction(new Runnable() {
+            @Override
+            public void run() {
+                new Note("outer before").save();
+                try {
+                    Rufus.transaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            new Note("nested").save();
+                            throw new IllegalStateException("nested failure");
+                        }
+                    });
+                } catch (IllegalStateException e) {
+                    // the outer transaction goes on
+                }
+                new Note("outer after").save();
+            }
+        });
+        assertEquals(2, new Note().count());
+        assertEquals(0, new Note().where("body", "nested").count());
+    }
+
+    @Test
+    public void failedOuterTransactionRollsBackEverything() {
+        try {
+            Rufus.transaction(new Runnable() {
+                @Override
+                public void run() {
+                    new Note("outer").save();
+                    Rufus.transaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            new Note("nested").save();
+                        }
+                    });
+                    throw new IllegalStateException("outer failure");
+                }
+            });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, new Note().count());
+        assertNull(new Note().find(1));
+    }
+
+    @Test
+    public void failedNestedTransactionEvictsItsCachedRows() {
+        final Memo memo = new Memo("original").save();
+        Rufus.transaction(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Rufus.transaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            Memo edited = new Memo().find(memo.getId());
+                            edited.setBody("rolled back");
+                            edited.update();
+                            throw new IllegalStateException("nested failure");
+                        }
+                    });
+                } catch (IllegalStateException e) {
+                    // the outer transaction goes on
+                }
+            }
+        });
+        assertEquals("original", new Memo().find(memo.getId()).getBody());
+    }
+}
@@ -0,0 +1,98 @@
+package corp.ny.com.rufus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.Metrics;
+import corp.ny.com.rufus.database.Model;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.database.TableMetadata;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class UpdateUnitTest {
+    private final List<Metrics.Event> updates = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("update.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Stamp().getSchema());
+        Metrics.setListener(new Metrics.Listener() {
+            @Override
+            public void onOperation(Metrics.Event event) {
+                if (event.getType() == Metrics.Type.UPDATE) updates.add(event);
+            }
+
+            @Override
+            public void onSlowQuery(Metrics.Event event, List<String> plan) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setListener(null);
+    }
+
+    @Test
+    public void onlyChangedColumnsAreWritten() {
+        int id = new Memo("first", 1).save().getId();
+        Memo body = new Memo().find(id);
+        Memo weight = new Memo().find(id);
+        body.setBody("second");
+        body.update();
+        weight.setWeight(2);
+        weight.update();
+
+        Memo stored = new Memo().find(id);
+        assertEquals("second", stored.getBody());
+        assertEquals(2, stored.getWeight(), 0);
+        assertEquals("UPDATE Memo SET weight = ? WHERE id = ?", updates.get(1).getShape());
+    }
+
+    @Test
+    public void unchangedModelWritesNothing() {
+        Memo memo = new Memo().find(new Memo("same").save().getId());
+        updates.clear();
+        memo.update();
+        memo.save();
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    public void overriddenValuesAreWritten() {
+        Stamp stamp = new Stamp("first").save();
+        assertEquals("written first", stamp.getStamp());
+        stamp.setBody("second");
+        stamp.update();
+        assertEquals("written second", new Stamp().find(stamp.getId()).getStamp());
+    }
+
+    @Test
+    public void modelWithoutColumnsIsNotTracked() {
+        assertTrue(TableMetadata.of(Memo.class).isTracked());
+        assertFalse(TableMetadata.of(Stamp.class).isTracked());
+        assertFalse(TableMetadata.of(Untracked.class).isTracked());
+    }
+
+    public static class Untracked extends Model<Untracked> {
+        private String body;
+    }
+}
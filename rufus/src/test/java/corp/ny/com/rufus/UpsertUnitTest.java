@@ -0,0 +1,69 @@
+package corp.ny.com.rufus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import corp.ny.com.rufus.database.BatchInsert;
+import corp.ny.com.rufus.database.EntityCache;
+import corp.ny.com.rufus.database.SchemaMigrator;
+import corp.ny.com.rufus.system.DatabaseConfig;
+import corp.ny.com.rufus.system.RufusApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * The SQLite of Robolectric predates ON CONFLICT DO UPDATE, rows go through the UPDATE then INSERT fallback
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class UpsertUnitTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RufusApp.init(RuntimeEnvironment.application, new DatabaseConfig().databaseName("upsert.db"));
+        EntityCache.clearAll();
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Memo().getSchema());
+        SchemaMigrator.migrate(RufusApp.getDataBaseInstance(), new Flag().getSchema());
+    }
+
+    @Test
+    public void nativeStatementUpdatesEveryColumnButTheKey() {
+        BatchInsert<Memo> insert = BatchInsert.<Memo>into(RufusApp.getDataBaseInstance(), "Memo", Memo.class).upsert("id");
+        assertEquals("INSERT INTO Memo (`id`,`body`,`weight`) VALUES (?,?,?) ON CONFLICT(`id`) DO UPDATE SET "
+                + "`body` = excluded.`body`,`weight` = excluded.`weight`", insert.toSql(true));
+    }
+
+    @Test
+    public void nativeStatementOfKeyOnlyTableStillWrites() {
+        BatchInsert<Flag> insert = BatchInsert.<Flag>into(RufusApp.getDataBaseInstance(), "Flag", Flag.class).upsert("id");
+        assertEquals("INSERT INTO Flag (`id`) VALUES (?) ON CONFLICT(`id`) DO UPDATE SET `id` = excluded.`id`",
+                insert.toSql(true));
+    }
+
+    @Test
+    public void existingRowIsUpdatedInPlace() {
+        Memo memo = new Memo("first", 1).save();
+        Memo edited = new Memo("second", 2);
+        edited.setId(memo.getId());
+        assertNotNull(edited.save());
+
+        assertEquals(1, new Memo().count());
+        Memo stored = new Memo().find(memo.getId());
+        assertEquals("second", stored.getBody());
+        assertEquals(2, stored.getWeight(), 0);
+    }
+
+    @Test
+    public void existingKeyOnlyRowIsSaved() {
+        assertNotNull(new Flag(7).save());
+        assertNotNull(new Flag(7).save());
+        assertEquals(1, new Flag().count());
+        assertEquals(2, new Flag().upsert(new Flag(7), new Flag(8)).getInserted());
+        assertEquals(2, new Flag().count());
+    }
+}